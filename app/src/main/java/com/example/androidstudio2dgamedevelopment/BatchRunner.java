@@ -0,0 +1,384 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput benchmark for the self-play bot. Plays a batch of seeded
+ * {@link GameEngine} games on a fixed number of worker threads and reports
+ * games and moves per second, the score and level distributions, how often
+ * each bonus was used and the decision latency. Every worker draws its game
+ * seeds from its own {@link GameRandom#split() split} of the root seed and
+ * gives MCTS a single-threaded search split from each game seed, so a run is
+ * reproducible for the same seed and thread count. The exception is the
+ * time-budgeted expectimax: how deep it gets depends on the machine and its
+ * load, so with a search budget the moves, and the scores, vary between runs.
+ *
+ * Runs on a desktop JVM against the compiled classes, for example
+ * <pre>java -cp classes com.example.androidstudio2dgamedevelopment.BatchRunner --games=10000 --csv=runs.csv --json=-</pre>
+ */
+final class BatchRunner {
+
+    static final int DEFAULT_GAMES = 1000;
+
+    /** Decision types counted as bonus uses, in BotDecision.Type order without NORMAL. */
+    private static final SelfPlayBot.BotDecision.Type[] BONUS_TYPES = Arrays.copyOfRange(
+            SelfPlayBot.BotDecision.Type.values(), 1, SelfPlayBot.BotDecision.Type.values().length);
+
+    /**
+     * Latencies in log-linear buckets, 16 per power of two, so percentiles are
+     * within about 6 % however many decisions are recorded.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+
+        private final long[] counts = new long[64 * SUB];
+        private long total;
+
+        void record(long nanos) {
+            counts[bucket(Math.max(0L, nanos))]++;
+            total++;
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            total += other.total;
+        }
+
+        long count() {
+            return total;
+        }
+
+        /** Nearest-rank percentile, q in [0, 100], as the lower bound of its bucket; 0 when empty. */
+        long percentile(double q) {
+            if (total == 0) return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(q / 100.0 * total));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) return lowerBound(b);
+            }
+            return lowerBound(counts.length - 1);
+        }
+
+        static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB) return bucket;
+            int exp = bucket / SUB + SUB_BITS - 1;
+            return (long) (SUB + bucket % SUB) << (exp - SUB_BITS);
+        }
+    }
+
+    /** Everything one worker measured; merged into a Summary at the end. */
+    private static final class Results {
+        final long[] scores;
+        final long[] levels;
+        final long[] bonusUses = new long[BONUS_TYPES.length];
+        final LatencyHistogram latency = new LatencyHistogram();
+        long moves;
+
+        Results(int games) {
+            scores = new long[games];
+            levels = new long[games];
+        }
+    }
+
+    /** One batch, ready to be written out. */
+    static final class Summary {
+        final int games, threads;
+        final long moves;
+        final double seconds, gamesPerSecond, movesPerSecond;
+        /** Final scores and levels reached, in ascending order. */
+        final long[] scores, levels;
+        final double meanScore, meanLevel;
+        /** Uses of each BONUS_TYPES entry over all games. */
+        final long[] bonusUses;
+        final LatencyHistogram latency;
+
+        private Summary(int threads, List<Results> parts, long elapsedNanos) {
+            this.threads = threads;
+            int n = 0;
+            for (Results r : parts) n += r.scores.length;
+            games = n;
+            scores = new long[n];
+            levels = new long[n];
+            bonusUses = new long[BONUS_TYPES.length];
+            latency = new LatencyHistogram();
+            long moveSum = 0;
+            int at = 0;
+            for (Results r : parts) {
+                System.arraycopy(r.scores, 0, scores, at, r.scores.length);
+                System.arraycopy(r.levels, 0, levels, at, r.levels.length);
+                at += r.scores.length;
+                for (int i = 0; i < bonusUses.length; i++) bonusUses[i] += r.bonusUses[i];
+                latency.add(r.latency);
+                moveSum += r.moves;
+            }
+            moves = moveSum;
+            Arrays.sort(scores);
+            Arrays.sort(levels);
+            meanScore = mean(scores);
+            meanLevel = mean(levels);
+            seconds = elapsedNanos / 1e9;
+            gamesPerSecond = (elapsedNanos <= 0) ? 0.0 : games / seconds;
+            movesPerSecond = (elapsedNanos <= 0) ? 0.0 : moves / seconds;
+        }
+
+        private static double mean(long[] values) {
+            double sum = 0.0;
+            for (long v : values) sum += v;
+            return (values.length == 0) ? 0.0 : sum / values.length;
+        }
+
+        static String csvHeader() {
+            StringBuilder sb = new StringBuilder("label,games,threads,seconds,games_per_s,moves,moves_per_s,"
+                    + "score_mean,score_p10,score_p50,score_p90,score_p99,score_max,"
+                    + "level_mean,level_p50,level_max,latency_p50_us,latency_p99_us");
+            for (SelfPlayBot.BotDecision.Type t : BONUS_TYPES) {
+                sb.append(",uses_").append(t.name().toLowerCase(Locale.ROOT));
+            }
+            return sb.toString();
+        }
+
+        String toCsv(String label) {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                    "%s,%d,%d,%.3f,%.1f,%d,%.1f,%.1f,%d,%d,%d,%d,%d,%.2f,%d,%d,%.1f,%.1f",
+                    csvField(label), games, threads, seconds, gamesPerSecond, moves, movesPerSecond,
+                    meanScore, BotTuner.percentile(scores, 10), BotTuner.percentile(scores, 50),
+                    BotTuner.percentile(scores, 90), BotTuner.percentile(scores, 99),
+                    BotTuner.percentile(scores, 100),
+                    meanLevel, BotTuner.percentile(levels, 50), BotTuner.percentile(levels, 100),
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3));
+            for (long uses : bonusUses) sb.append(',').append(uses);
+            return sb.toString();
+        }
+
+        /** The label as an RFC 4180 field: always quoted, embedded quotes doubled. */
+        static String csvField(String value) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        String toJson(String label) {
+            StringBuilder uses = new StringBuilder();
+            for (int i = 0; i < BONUS_TYPES.length; i++) {
+                if (i > 0) uses.append(", ");
+                uses.append('"').append(BONUS_TYPES[i].name().toLowerCase(Locale.ROOT)).append("\": ").append(bonusUses[i]);
+            }
+            return String.format(Locale.ROOT, "{\n"
+                    + "  \"label\": %s,\n"
+                    + "  \"games\": %d, \"threads\": %d, \"seconds\": %.3f,\n"
+                    + "  \"games_per_s\": %.1f, \"moves\": %d, \"moves_per_s\": %.1f,\n"
+                    + "  \"score\": {\"mean\": %.1f, \"p10\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d},\n"
+                    + "  \"level\": {\"mean\": %.2f, \"p50\": %d, \"max\": %d},\n"
+                    + "  \"decision_latency_us\": {\"p50\": %.1f, \"p99\": %.1f},\n"
+                    + "  \"bonus_uses\": {%s}\n"
+                    + "}",
+                    jsonString(label),
+                    games, threads, seconds, gamesPerSecond, moves, movesPerSecond,
+                    meanScore, BotTuner.percentile(scores, 10), BotTuner.percentile(scores, 50),
+                    BotTuner.percentile(scores, 90), BotTuner.percentile(scores, 99),
+                    BotTuner.percentile(scores, 100),
+                    meanLevel, BotTuner.percentile(levels, 50), BotTuner.percentile(levels, 100),
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, uses);
+        }
+
+        /** The label as a JSON string: quoted, with quotes, backslashes and control characters escaped. */
+        static String jsonString(String value) {
+            StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':  sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+
+    private final int width, height, games, threads, maxMoves;
+    private final long seed;
+    private int mctsPlayouts;
+    private long searchBudgetNanos;
+
+    BatchRunner(int width, int height, int games, int threads, int maxMoves, long seed) {
+        GameAction.checkBoardSize(width, height);
+        this.width = width;
+        this.height = height;
+        this.games = games;
+        this.threads = threads;
+        this.maxMoves = maxMoves;
+        this.seed = seed;
+    }
+
+    /**
+     * Bot configuration as in SelfPlayBot.Context; the plain heuristic by default.
+     * A search budget makes the batch nondeterministic, see the class comment.
+     */
+    void setLookahead(int mctsPlayouts, long searchBudgetNanos) {
+        this.mctsPlayouts = mctsPlayouts;
+        this.searchBudgetNanos = searchBudgetNanos;
+    }
+
+    /** Plays the batch, games split as evenly as possible across the workers. */
+    Summary run() throws InterruptedException {
+        GameRandom root = new GameRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Results>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int w = 0; w < threads; w++) {
+                int count = games / threads + ((w < games % threads) ? 1 : 0);
+                GameRandom workerSeeds = root.split();
+                futures.add(pool.submit(() -> play(count, workerSeeds)));
+            }
+            List<Results> parts = new ArrayList<>();
+            for (Future<Results> f : futures) {
+                try {
+                    parts.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("worker failed", e.getCause());
+                }
+            }
+            return new Summary(threads, parts, System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Results play(int count, GameRandom gameSeeds) {
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(width, height);
+        ctx.setMctsPlayouts(mctsPlayouts);
+        ctx.setSearchBudgetNanos(searchBudgetNanos);
+        // the batch already keeps every core busy; one search worker keeps playouts
+        // repeatable. Its streams are replaced for every game below.
+        if (mctsPlayouts > 0) {
+            ctx.setMctsSearch(new MctsSearch(width, height, 1, new GameRandom(gameSeeds.getState())));
+        }
+        Results results = new Results(count);
+        for (int i = 0; i < count; i++) {
+            long gameSeed = gameSeeds.nextLong();
+            // the search splits its streams off, so playouts do not replay the game's drop-ins
+            ctx.setRandom(new GameRandom(gameSeed));
+            GameEngine engine = new GameEngine(width, height, gameSeed);
+            playGame(ctx, engine, results);
+            results.scores[i] = engine.getScore();
+            results.levels[i] = engine.getLevel();
+            results.moves += engine.getMoveCount();
+        }
+        return results;
+    }
+
+    /** Like SelfPlayBot.playTurn until the game ends, timing each decision on its own. */
+    private void playGame(SelfPlayBot.Context ctx, GameEngine engine, Results results) {
+        while (!engine.isGameOver() && engine.getMoveCount() < maxMoves) {
+            ctx.load(engine.getBoard());
+            ctx.setProgress(engine.getLevel(), engine.getScore());
+            long start = System.nanoTime();
+            SelfPlayBot.BotDecision decision = SelfPlayBot.computeDecision(ctx, engine.getBonusCounts());
+            results.latency.record(System.nanoTime() - start);
+            if (!engine.apply(decision)) {
+                break;
+            }
+            if (decision.type != SelfPlayBot.BotDecision.Type.NORMAL) {
+                results.bonusUses[decision.type.ordinal() - 1]++;
+            }
+        }
+    }
+
+    /**
+     * Options: --width, --height (at most GameAction.MAX_CELLS cells together),
+     * --games, --threads (all cores by default), --max-moves, --seed,
+     * --mcts-playouts, --search-budget-us (not reproducible), --label (first CSV
+     * column), --csv and --json (output files, - for standard output). The CSV
+     * header is only written to new files, so runs of different versions can be
+     * appended to one file. Without --csv or --json the CSV goes to standard output.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width = 5, height = 7;
+        int games = DEFAULT_GAMES, threads = Runtime.getRuntime().availableProcessors();
+        int maxMoves = BotTuner.DEFAULT_MAX_MOVES, mctsPlayouts = 0;
+        long seed = 1L, searchBudgetMicros = 0L;
+        String label = "", csv = null, json = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq), value = arg.substring(eq + 1);
+            switch (name) {
+                case "width":            width = Integer.parseInt(value); break;
+                case "height":           height = Integer.parseInt(value); break;
+                case "games":            games = Integer.parseInt(value); break;
+                case "threads":          threads = Integer.parseInt(value); break;
+                case "max-moves":        maxMoves = Integer.parseInt(value); break;
+                case "seed":             seed = Long.parseLong(value); break;
+                case "mcts-playouts":    mctsPlayouts = Integer.parseInt(value); break;
+                case "search-budget-us": searchBudgetMicros = Long.parseLong(value); break;
+                case "label":            label = value; break;
+                case "csv":              csv = value; break;
+                case "json":             json = value; break;
+                default: throw new IllegalArgumentException("unknown option --" + name);
+            }
+        }
+        if (csv == null && json == null) {
+            csv = "-";
+        }
+        BatchRunner runner = new BatchRunner(width, height, games, Math.max(1, threads), maxMoves, seed);
+        runner.setLookahead(mctsPlayouts, searchBudgetMicros * 1000L);
+        Summary summary = runner.run();
+        if (csv != null) {
+            boolean header = csv.equals("-") || !new File(csv).isFile() || new File(csv).length() == 0;
+            try (Output out = new Output(csv, true)) {
+                if (header) out.stream.println(Summary.csvHeader());
+                out.stream.println(summary.toCsv(label));
+            }
+        }
+        if (json != null) {
+            try (Output out = new Output(json, false)) {
+                out.stream.println(summary.toJson(label));
+            }
+        }
+    }
+
+    /** A report file, or standard output for "-", which is flushed but left open. */
+    private static final class Output implements AutoCloseable {
+        final PrintStream stream;
+
+        Output(String path, boolean append) throws IOException {
+            stream = path.equals("-") ? System.out
+                    : new PrintStream(new FileOutputStream(path, append), false, "UTF-8");
+        }
+
+        @Override
+        public void close() {
+            if (stream == System.out) stream.flush(); else stream.close();
+        }
+    }
+}
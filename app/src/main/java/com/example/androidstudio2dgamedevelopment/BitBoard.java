@@ -0,0 +1,162 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard form of a board with at most 64 cells: one mask of empty cells plus
+ * one mask per value. Cell (x, y) is bit y * width + x, so flood fills,
+ * reachability and group sizes become a handful of shifts, masks and
+ * {@link Long#bitCount(long)} calls per step.
+ */
+final class BitBoard {
+
+    static final int MAX_CELLS = 64;
+
+    private final int width;
+    private final int height;
+    private final long boardMask;
+    private final long notFirstCol;
+    private final long notLastCol;
+
+    private long emptyMask;
+    private long[] valueMasks = new long[16];
+
+    BitBoard(int width, int height) {
+        if (!fits(width, height)) {
+            throw new IllegalArgumentException("Board too large for a bitboard: " + width + "x" + height);
+        }
+        this.width  = width;
+        this.height = height;
+        int cells = width * height;
+        boardMask = (cells == MAX_CELLS) ? -1L : (1L << cells) - 1;
+
+        long firstCol = 0L;
+        for (int y = 0; y < height; y++) {
+            firstCol |= 1L << (y * width);
+        }
+        notFirstCol = boardMask & ~firstCol;
+        notLastCol  = boardMask & ~(firstCol << (width - 1));
+    }
+
+    static boolean fits(int width, int height) {
+        return width > 0 && height > 0 && width * height <= MAX_CELLS;
+    }
+
+    /** Copies a board given as board[x][y], -1 meaning empty. */
+    void load(int[][] board) {
+        emptyMask = 0L;
+        Arrays.fill(valueMasks, 0L);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int val = board[x][y];
+                long bit = bit(x, y);
+                if (val < 0) {
+                    emptyMask |= bit;
+                } else {
+                    ensureValue(val);
+                    valueMasks[val] |= bit;
+                }
+            }
+        }
+    }
+
+    private void ensureValue(int val) {
+        if (val >= valueMasks.length) {
+            valueMasks = Arrays.copyOf(valueMasks, Math.max(valueMasks.length * 2, val + 1));
+        }
+    }
+
+    long bit(int x, int y) {
+        return 1L << (y * width + x);
+    }
+
+    long emptyMask() {
+        return emptyMask;
+    }
+
+    long occupiedMask() {
+        return boardMask & ~emptyMask;
+    }
+
+    long valueMask(int val) {
+        return (val >= 0 && val < valueMasks.length) ? valueMasks[val] : 0L;
+    }
+
+    int freeCount() {
+        return Long.bitCount(emptyMask);
+    }
+
+    long rowMask(int y) {
+        long row = (width == MAX_CELLS) ? -1L : (1L << width) - 1;
+        return row << (y * width);
+    }
+
+    long colMask(int x) {
+        return (boardMask & ~notFirstCol) << x;
+    }
+
+    long left(long m) {
+        return (m >>> 1) & notLastCol;
+    }
+
+    long right(long m) {
+        return (m << 1) & notFirstCol;
+    }
+
+    long up(long m) {
+        return (height > 1) ? m >>> width : 0L;
+    }
+
+    long down(long m) {
+        return (height > 1) ? (m << width) & boardMask : 0L;
+    }
+
+    /** Cells 4-adjacent to any cell of m. */
+    long neighbours(long m) {
+        return left(m) | right(m) | up(m) | down(m);
+    }
+
+    /** All cells of passable connected to seed; seed must be part of passable. */
+    long floodFill(long seed, long passable) {
+        long filled = seed;
+        while (true) {
+            long grown = (filled | neighbours(filled)) & passable;
+            if (grown == filled) {
+                return filled;
+            }
+            filled = grown;
+        }
+    }
+
+    /** Empty cells reachable from (x, y), treating (x, y) itself as empty; includes (x, y). */
+    long reachableFrom(int x, int y) {
+        long src = bit(x, y);
+        return floodFill(src, emptyMask | src);
+    }
+
+    /** Number of (cell of group, direction) pairs whose neighbour lies in others. */
+    int countAdjacentPairs(long group, long others) {
+        return Long.bitCount(left(group) & others) + Long.bitCount(right(group) & others)
+             + Long.bitCount(up(group) & others)   + Long.bitCount(down(group) & others);
+    }
+
+    /** Size of the largest connected group of val. */
+    int maxGroupSize(int val) {
+        long remaining = valueMask(val);
+        int max = 0;
+        while (remaining != 0) {
+            long group = floodFill(Long.lowestOneBit(remaining), valueMask(val));
+            max = Math.max(max, Long.bitCount(group));
+            remaining &= ~group;
+        }
+        return max;
+    }
+
+    static int bitX(long bit, int width) {
+        return Long.numberOfTrailingZeros(bit) % width;
+    }
+
+    static int bitY(long bit, int width) {
+        return Long.numberOfTrailingZeros(bit) / width;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Locale;
+
+/**
+ * Thresholds and weights of the self-play heuristics. DEFAULT holds the values
+ * the bot shipped with; BotTuner searches for better ones.
+ */
+final class BotParams {
+
+    static final BotParams DEFAULT = new BotParams(0.42f, 0.30f, 0.25f, 500, 100, 4, 3, 5);
+
+    /** Below this free-cell ratio the board counts as crowded and Color Clear may be used. */
+    final float crowdedRatio;
+    /** Below this ratio Delete Line and Bomb may be used as well. */
+    final float veryCrowdedRatio;
+    /** Below this ratio the worst cell may be dissolved. */
+    final float dissolveRatio;
+    /** Bonus per chain step for a merge whose result is likely to merge again. */
+    final int chainBonus;
+    /** Score per step a clustering move brings a cell closer to its nearest equal value. */
+    final int clusterWeight;
+    /** Fewest cells Color Clear must remove. */
+    final int colorClearMinCells;
+    /** Fewest filled cells a deleted line must hold. */
+    final int delLineMinFilled;
+    /** Fewest cells a Bomb must remove. */
+    final int bombMinCells;
+
+    BotParams(float crowdedRatio, float veryCrowdedRatio, float dissolveRatio,
+              int chainBonus, int clusterWeight,
+              int colorClearMinCells, int delLineMinFilled, int bombMinCells) {
+        this.crowdedRatio       = crowdedRatio;
+        this.veryCrowdedRatio   = veryCrowdedRatio;
+        this.dissolveRatio      = dissolveRatio;
+        this.chainBonus         = chainBonus;
+        this.clusterWeight      = clusterWeight;
+        this.colorClearMinCells = colorClearMinCells;
+        this.delLineMinFilled   = delLineMinFilled;
+        this.bombMinCells       = bombMinCells;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "crowded=%.3f veryCrowded=%.3f dissolve=%.3f chain=%d cluster=%d"
+                        + " colorClear>=%d delLine>=%d bomb>=%d",
+                crowdedRatio, veryCrowdedRatio, dissolveRatio, chainBonus, clusterWeight,
+                colorClearMinCells, delLineMinFilled, bombMinCells);
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline tuning of the self-play heuristics. Plays seeded {@link GameEngine}
+ * games with the plain heuristic bot (no lookahead) on all cores and searches
+ * BotParams with a small evolutionary loop: the best quarter of each generation
+ * survives and the rest is refilled with mutated crossovers of the survivors.
+ * Every configuration plays the same seeds, so scores are directly comparable.
+ *
+ * Runs on a desktop JVM against the compiled classes, for example
+ * <pre>java -cp classes com.example.androidstudio2dgamedevelopment.BotTuner --games=2000 --out=tuning.tsv</pre>
+ */
+final class BotTuner {
+
+    static final int DEFAULT_GAMES = 1000;
+    static final int DEFAULT_GENERATIONS = 10;
+    static final int DEFAULT_POPULATION = 12;
+    /** Games still running after this many decisions are scored as they stand. */
+    static final int DEFAULT_MAX_MOVES = 5000;
+
+    private static final float MIN_RATIO = 0.05f;
+    private static final float MAX_RATIO = 0.95f;
+    private static final double RATIO_SIGMA = 0.15;
+    private static final double WEIGHT_SIGMA = 0.3;
+    private static final double THRESHOLD_STEP_CHANCE = 0.3;
+
+    /** Scores of one configuration over all games. */
+    static final class Stats {
+        final BotParams params;
+        /** Final scores in ascending order. */
+        final long[] scores;
+        final double mean;
+        final double gamesPerSecond;
+
+        Stats(BotParams params, long[] scores, long elapsedNanos) {
+            this.params = params;
+            this.scores = scores.clone();
+            Arrays.sort(this.scores);
+            double sum = 0.0;
+            for (long s : this.scores) sum += s;
+            mean = (this.scores.length == 0) ? 0.0 : sum / this.scores.length;
+            gamesPerSecond = (elapsedNanos <= 0) ? 0.0 : this.scores.length * 1e9 / elapsedNanos;
+        }
+
+        /** Nearest-rank percentile, q in [0, 100]; 0 without games. */
+        long percentile(double q) {
+            return BotTuner.percentile(scores, q);
+        }
+    }
+
+    /** Nearest-rank percentile of ascending values, q in [0, 100]; 0 if there are none. */
+    static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0L;
+        int rank = (int) Math.ceil(q / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private final int width, height, games, maxMoves;
+    private final long seed;
+
+    BotTuner(int width, int height, int games, int maxMoves, long seed) {
+        GameAction.checkBoardSize(width, height);
+        this.width = width;
+        this.height = height;
+        this.games = games;
+        this.maxMoves = maxMoves;
+        this.seed = seed;
+    }
+
+    /** Plays every game with params, split across the common fork-join pool. */
+    Stats evaluate(BotParams params) {
+        long[] scores = new long[games];
+        long start = System.nanoTime();
+        int grain = Math.max(1, games / (ForkJoinPool.getCommonPoolParallelism() * 8));
+        ForkJoinPool.commonPool().invoke(new PlayRange(params, scores, 0, games, grain));
+        return new Stats(params, scores, System.nanoTime() - start);
+    }
+
+    /** Seed of game i; the same for every configuration. */
+    long gameSeed(int i) {
+        return GameRandom.mix(seed + i);
+    }
+
+    private final class PlayRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BotParams params;
+        private final long[] scores;
+        private final int from, to, grain;
+
+        PlayRange(BotParams params, long[] scores, int from, int to, int grain) {
+            this.params = params;
+            this.scores = scores;
+            this.from = from; this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                SelfPlayBot.Context ctx = new SelfPlayBot.Context(width, height);
+                ctx.setParams(params);
+                for (int i = from; i < to; i++) {
+                    ctx.setRandom(new GameRandom(gameSeed(i)));
+                    scores[i] = playGame(ctx, new GameEngine(width, height, gameSeed(i)), maxMoves);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PlayRange(params, scores, from, mid, grain),
+                      new PlayRange(params, scores, mid, to, grain));
+        }
+    }
+
+    /**
+     * Lets the bot play engine's game until it ends, the bot finds nothing to do
+     * or maxMoves decisions were made.
+     *
+     * @return the final score
+     */
+    static long playGame(SelfPlayBot.Context ctx, GameEngine engine, int maxMoves) {
+        while (!engine.isGameOver() && engine.getMoveCount() < maxMoves) {
+            if (!SelfPlayBot.playTurn(ctx, engine)) break;
+        }
+        return engine.getScore();
+    }
+
+    /**
+     * Evolves population configurations, starting from BotParams.DEFAULT and its
+     * mutations, and writes one report line per evaluated configuration.
+     *
+     * @return the final generation, best first
+     */
+    List<Stats> evolve(int generations, int population, Random rand, PrintStream report) {
+        report.println("generation\tmean\tp10\tp50\tp90\tmax\tgames/s\tparams");
+        List<BotParams> candidates = new ArrayList<>();
+        candidates.add(BotParams.DEFAULT);
+        while (candidates.size() < population) {
+            candidates.add(mutate(BotParams.DEFAULT, rand));
+        }
+        List<Stats> ranked = new ArrayList<>();
+        for (int gen = 0; gen < generations; gen++) {
+            for (BotParams p : candidates) {
+                Stats s = evaluate(p);
+                report(report, gen, s);
+                ranked.add(s);
+            }
+            ranked.sort(Comparator.comparingDouble((Stats s) -> s.mean).reversed());
+            ranked.subList(Math.min(ranked.size(), Math.max(1, population / 4)), ranked.size()).clear();
+
+            // survivors keep their stats; only new configurations are played next generation
+            candidates.clear();
+            while (ranked.size() + candidates.size() < population) {
+                BotParams a = ranked.get(rand.nextInt(ranked.size())).params;
+                BotParams b = ranked.get(rand.nextInt(ranked.size())).params;
+                candidates.add(mutate(crossover(a, b, rand), rand));
+            }
+        }
+        report.println("# best: " + ranked.get(0).params);
+        report.flush();
+        return ranked;
+    }
+
+    private static void report(PrintStream out, int generation, Stats s) {
+        out.println(String.format(Locale.ROOT, "%d\t%.1f\t%d\t%d\t%d\t%d\t%.1f\t%s",
+                generation, s.mean, s.percentile(10), s.percentile(50), s.percentile(90),
+                s.percentile(100), s.gamesPerSecond, s.params));
+        out.flush();
+    }
+
+    static BotParams crossover(BotParams a, BotParams b, Random rand) {
+        return new BotParams(
+                rand.nextBoolean() ? a.crowdedRatio : b.crowdedRatio,
+                rand.nextBoolean() ? a.veryCrowdedRatio : b.veryCrowdedRatio,
+                rand.nextBoolean() ? a.dissolveRatio : b.dissolveRatio,
+                rand.nextBoolean() ? a.chainBonus : b.chainBonus,
+                rand.nextBoolean() ? a.clusterWeight : b.clusterWeight,
+                rand.nextBoolean() ? a.colorClearMinCells : b.colorClearMinCells,
+                rand.nextBoolean() ? a.delLineMinFilled : b.delLineMinFilled,
+                rand.nextBoolean() ? a.bombMinCells : b.bombMinCells);
+    }
+
+    /** Log-normal steps for ratios and weights, +-1 steps for the minimum targets. */
+    BotParams mutate(BotParams p, Random rand) {
+        return new BotParams(
+                mutateRatio(p.crowdedRatio, rand),
+                mutateRatio(p.veryCrowdedRatio, rand),
+                mutateRatio(p.dissolveRatio, rand),
+                mutateWeight(p.chainBonus, 0, rand),
+                mutateWeight(p.clusterWeight, 1, rand),
+                stepThreshold(p.colorClearMinCells, width * height, rand),
+                stepThreshold(p.delLineMinFilled, Math.max(width, height), rand),
+                stepThreshold(p.bombMinCells, 9, rand));
+    }
+
+    private static float mutateRatio(float v, Random rand) {
+        float r = (float) (v * Math.exp(rand.nextGaussian() * RATIO_SIGMA));
+        return Math.max(MIN_RATIO, Math.min(MAX_RATIO, r));
+    }
+
+    private static int mutateWeight(int v, int min, Random rand) {
+        long r = Math.round(Math.max(v, 1) * Math.exp(rand.nextGaussian() * WEIGHT_SIGMA));
+        return (int) Math.max(min, Math.min(Integer.MAX_VALUE / 16, r));
+    }
+
+    private static int stepThreshold(int v, int max, Random rand) {
+        if (rand.nextDouble() >= THRESHOLD_STEP_CHANCE) return v;
+        int r = v + (rand.nextBoolean() ? 1 : -1);
+        return Math.max(1, Math.min(max, r));
+    }
+
+    /**
+     * Options: --width, --height (at most GameAction.MAX_CELLS cells together),
+     * --games, --generations, --population, --max-moves, --seed and --out
+     * (report file; standard output by default).
+     */
+    public static void main(String[] args) throws IOException {
+        int width = 5, height = 7;
+        int games = DEFAULT_GAMES, generations = DEFAULT_GENERATIONS, population = DEFAULT_POPULATION;
+        int maxMoves = DEFAULT_MAX_MOVES;
+        long seed = 1L;
+        String out = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq), value = arg.substring(eq + 1);
+            switch (name) {
+                case "width":       width = Integer.parseInt(value); break;
+                case "height":      height = Integer.parseInt(value); break;
+                case "games":       games = Integer.parseInt(value); break;
+                case "generations": generations = Integer.parseInt(value); break;
+                case "population":  population = Integer.parseInt(value); break;
+                case "max-moves":   maxMoves = Integer.parseInt(value); break;
+                case "seed":        seed = Long.parseLong(value); break;
+                case "out":         out = value; break;
+                default: throw new IllegalArgumentException("unknown option --" + name);
+            }
+        }
+        BotTuner tuner = new BotTuner(width, height, games, maxMoves, seed);
+        PrintStream report = (out == null) ? System.out : new PrintStream(new FileOutputStream(out), false, "UTF-8");
+        try {
+            report.println(String.format(Locale.ROOT, "# %dx%d board, %d games per configuration, %d threads",
+                    width, height, games, ForkJoinPool.getCommonPoolParallelism()));
+            tuner.evolve(generations, population, new Random(seed), report);
+        } finally {
+            if (report != System.out) report.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.androidstudio2dgamedevelopment;
+
+/**
+ * Depth-limited expectimax over normal moves. Max nodes try moves, chance nodes
+ * drop in DROP_INS_AFTER_MOTION cells from the level's spawn window after every
+ * move that did not merge. Chance nodes are estimated from a fixed number of
+ * sampled spawn sequences rather than enumerated. Samples are drawn from the
+ * position's hash, so a position reached along different paths gets the same
+ * spawns and its value can be shared through the transposition table, which
+ * is kept across decisions. Board hashes are carried down the tree and updated
+ * by the cells each move and spawn writes, not recomputed per node.
+ *
+ * Iterative deepening runs until the time budget is spent; the move of the last
+ * completed depth is returned, so a result is always available at the deadline.
+ * Boards are flat (y * w + x, -1 empty) and all scratch space is preallocated.
+ * Not thread-safe.
+ */
+public final class ExpectimaxSearch {
+
+    static final int MAX_DEPTH = 4;
+    /** Transposition table entries as a power of two; ~1 MB. */
+    static final int DEFAULT_TABLE_BITS = 16;
+    /** Spawn sequences sampled per chance node. */
+    private static final int SPAWN_SAMPLES = 3;
+    /** Moves expanded at max nodes below the root, best-looking first. */
+    private static final int MAX_INNER_MOVES = 8;
+    /** Nodes between two clock reads. */
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private static final double GAME_OVER_PENALTY = -100000.0;
+    private static final double FREE_CELL_WEIGHT  = 6.0;
+    private static final double SAME_PAIR_WEIGHT  = 3.0;
+
+    private final int w, h, n;
+    private final FlatBoard rules;
+
+    private final int[] rootBoard;
+    private final int[][] moveBoards;
+    private final int[][] spawnBoards;
+    private final int[][] regions;
+    private int[][] moves;
+    private final int[] numMoves = new int[MAX_DEPTH + 1];
+    private final int[][] innerMoves = new int[MAX_DEPTH + 1][MAX_INNER_MOVES];
+    private final int[] innerKeys = new int[MAX_INNER_MOVES];
+
+    private final TranspositionTable table;
+    private int[] bonusCounts;
+    private long deadline;
+    private int nodeCount;
+    private boolean aborted;
+    private int completedDepth;
+
+    public ExpectimaxSearch(int w, int h) {
+        this(w, h, DEFAULT_TABLE_BITS);
+    }
+
+    /** @param tableBits log2 of the transposition table size */
+    public ExpectimaxSearch(int w, int h, int tableBits) {
+        this.w = w;
+        this.h = h;
+        n = w * h;
+        rules       = new FlatBoard(w, h);
+        rootBoard   = new int[n];
+        moveBoards  = new int[MAX_DEPTH + 1][n];
+        spawnBoards = new int[MAX_DEPTH + 1][n];
+        regions     = new int[MAX_DEPTH + 1][n];
+        moves       = new int[MAX_DEPTH + 1][Math.max(16, n)];
+        table       = new TranspositionTable(tableBits);
+    }
+
+    /** Shared across decisions; exposed for hit-rate statistics. */
+    TranspositionTable getTable() {
+        return table;
+    }
+
+    /** Depth of the last fully searched iteration; 0 if even depth 1 ran out of time. */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Best normal move on board[x][y] at the given level and score within budgetNanos.
+     *
+     * @param bonusCounts bonuses in hand; part of the transposition key only
+     * @param fallback    move searched first and returned if depth 1 does not finish; may be null
+     * @return the chosen move, or fallback if there is no legal move
+     */
+    public SelfPlayBot.BotDecision search(int[][] board, int level, long score, int[] bonusCounts,
+                                          long budgetNanos, SelfPlayBot.BotDecision fallback) {
+        deadline = System.nanoTime() + budgetNanos;
+        nodeCount = 0;
+        aborted = false;
+        completedDepth = 0;
+        this.bonusCounts = bonusCounts;
+        table.newSearch();
+
+        rules.load(board, rootBoard);
+        long rootHash = rules.hash(rootBoard);
+        rules.takeHashDelta();
+        generateMoves(rootBoard, 0);
+        int count = numMoves[0];
+        if (count == 0) {
+            return fallback;
+        }
+        int[] root = moves[0];
+        if (fallback != null && fallback.type == SelfPlayBot.BotDecision.Type.NORMAL) {
+            moveToFront(root, count, FlatBoard.encode(fallback.p1y * w + fallback.p1x, fallback.p2y * w + fallback.p2x));
+        }
+
+        int best = root[0];
+        boolean found = false;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int bestMove = root[0];
+            for (int i = 0; i < count && !aborted; i++) {
+                double v = moveValue(rootBoard, rootHash, root[i], score, level, depth, 0);
+                if (!aborted && v > bestValue) {
+                    bestValue = v;
+                    bestMove = root[i];
+                }
+            }
+            if (aborted) break;
+            best = bestMove;
+            found = true;
+            completedDepth = depth;
+            moveToFront(root, count, best); // searched first at the next depth
+        }
+
+        if (!found && fallback != null) {
+            return fallback;
+        }
+        int src = FlatBoard.source(best), dst = FlatBoard.target(best);
+        return SelfPlayBot.BotDecision.normal(src % w, src / w, dst % w, dst / w);
+    }
+
+    // -------------------------------------------------------------------------
+    // Tree
+    // -------------------------------------------------------------------------
+
+    /** @param hash rules.hash(board), kept up to date by the caller */
+    private double maxNode(int[] board, long hash, long score, int level, int depth, int ply) {
+        if (tick() || depth == 0) {
+            return evaluate(board);
+        }
+        long key = TranspositionTable.key(hash, level, score, bonusCounts);
+        double cached = table.probe(key, depth);
+        if (!Double.isNaN(cached)) {
+            return cached;
+        }
+        generateMoves(board, ply);
+        int count = selectInnerMoves(board, ply);
+        if (count == 0) {
+            return evaluate(board);
+        }
+        int[] selected = innerMoves[ply];
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count && !aborted; i++) {
+            best = Math.max(best, moveValue(board, hash, selected[i], score, level, depth, ply));
+        }
+        if (!aborted) table.store(key, depth, best);
+        return best;
+    }
+
+    /** Score gained by move plus the value of what follows, relative to score. */
+    private double moveValue(int[] from, long fromHash, int move, long score, int level, int depth, int ply) {
+        int[] b = moveBoards[ply];
+        System.arraycopy(from, 0, b, 0, n);
+        int src = FlatBoard.source(move), dst = FlatBoard.target(move);
+        rules.write(b, dst, b[src]);
+        rules.write(b, src, -1);
+
+        long newScore = GameRules.safeAdd(score, rules.resolveChain(b, dst, level));
+        boolean merged = rules.lastChainLength() > 0;
+        int newLevel = rules.advanceLevel(b, newScore, level);
+        long hash = fromHash ^ rules.takeHashDelta();
+        int drops = merged ? 0 : GameRules.DROP_INS_AFTER_MOTION;
+        if (rules.countFree(b) == n) drops = GameRules.DROP_INS_AFTER_MOTION; // empty board refills
+
+        if (drops == 0) {
+            return (newScore - score) + maxNode(b, hash, newScore, newLevel, depth - 1, ply + 1);
+        }
+
+        double sum = 0.0;
+        int[] c = spawnBoards[ply];
+        long seed = hash ^ newLevel;
+        for (int s = 0; s < SPAWN_SAMPLES; s++) {
+            System.arraycopy(b, 0, c, 0, n);
+            long sampleScore = newScore;
+            int sampleLevel = newLevel;
+            boolean gameOver = false;
+            for (int k = 0; k < drops; k++) {
+                int free = rules.countFree(c);
+                if (free == 0) { gameOver = true; break; }
+                long r = GameRandom.mix(seed += GameRandom.GOLDEN_GAMMA) >>> 1;
+                int cell = rules.nthFree(c, (int) (r % free));
+                int min = LevelProgression.getMinSpawnIndex(sampleLevel);
+                int range = LevelProgression.getMaxSpawnIndex(sampleLevel) - min + 1;
+                rules.write(c, cell, min + (int) ((r >>> 31) % range));
+                sampleScore = GameRules.safeAdd(sampleScore, rules.resolveChain(c, cell, sampleLevel));
+                sampleLevel = rules.advanceLevel(c, sampleScore, sampleLevel);
+                if (rules.countFree(c) == 0) { gameOver = true; break; }
+            }
+            long sampleHash = hash ^ rules.takeHashDelta();
+            double gained = sampleScore - score;
+            sum += gameOver ? gained + GAME_OVER_PENALTY
+                            : gained + maxNode(c, sampleHash, sampleScore, sampleLevel, depth - 1, ply + 1);
+            if (aborted) return sum;
+        }
+        return sum / SPAWN_SAMPLES;
+    }
+
+    /** Static value of a position: room to move and same-value neighbours. */
+    private double evaluate(int[] b) {
+        int free = 0, pairs = 0;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int v = b[y * w + x];
+                if (v < 0) { free++; continue; }
+                if (x + 1 < w && b[y * w + x + 1] == v) pairs++;
+                if (y + 1 < h && b[(y + 1) * w + x] == v) pairs++;
+            }
+        }
+        return FREE_CELL_WEIGHT * free + SAME_PAIR_WEIGHT * pairs;
+    }
+
+    private boolean tick() {
+        if (nodeCount++ % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    private void generateMoves(int[] b, int ply) {
+        moves[ply] = rules.generateMoves(b, regions[ply], moves[ply]);
+        numMoves[ply] = rules.moveCount();
+    }
+
+    /** Keeps the MAX_INNER_MOVES most promising moves of ply in innerMoves[ply]. */
+    private int selectInnerMoves(int[] b, int ply) {
+        return rules.selectMoves(b, moves[ply], numMoves[ply], innerMoves[ply], innerKeys, MAX_INNER_MOVES);
+    }
+
+    private static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = move;
+                return;
+            }
+        }
+    }
+}
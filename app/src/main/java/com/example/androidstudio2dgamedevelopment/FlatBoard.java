@@ -0,0 +1,389 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Arrays;
+
+/**
+ * Game rules on flat boards for the search bots: cell y * w + x, -1 empty.
+ * Holds the flood-fill scratch for one board size, so each searching thread
+ * needs its own instance. Moves are encoded as source << 16 | target; the
+ * full action set, bonuses included, uses {@link GameAction} ints.
+ */
+final class FlatBoard {
+
+    final int w, h, n;
+
+    // A cell is visited in the current fill iff stamp[cell] == currentStamp.
+    private final int[] stamp;
+    private int currentStamp;
+    /** Cells reached by the last flood fill; a group fill leaves its members here. */
+    final int[] queue;
+    private int lastChainLength;
+    /** XOR of the Zobrist changes written since the last takeHashDelta(). */
+    private long hashDelta;
+    private int moveCount;
+    // Values already given a Color Clear action: valueSeen[v] == currentStamp.
+    private int[] valueSeen = new int[16];
+
+    FlatBoard(int w, int h) {
+        this.w = w;
+        this.h = h;
+        n = w * h;
+        stamp = new int[n];
+        queue = new int[n];
+    }
+
+    static int encode(int src, int dst) {
+        return (src << 16) | dst;
+    }
+
+    static int source(int move) {
+        return move >>> 16;
+    }
+
+    static int target(int move) {
+        return move & 0xffff;
+    }
+
+    /** Copies board[x][y] into the flat board b. */
+    void load(int[][] board, int[] b) {
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                b[y * w + x] = board[x][y];
+    }
+
+    /** Zobrist hash of b over flat cell indices; not comparable with GameBoardArray.getHash(). */
+    long hash(int[] b) {
+        long hash = 0L;
+        for (int i = 0; i < n; i++) {
+            if (b[i] >= 0) hash ^= GameBoardArray.zobristKey(i, b[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Sets b[cell] to val like a plain store, and folds the change into the hash
+     * delta. resolveChain and advanceLevel write through here too.
+     */
+    void write(int[] b, int cell, int val) {
+        int old = b[cell];
+        if (old >= 0) hashDelta ^= GameBoardArray.zobristKey(cell, old);
+        if (val >= 0) hashDelta ^= GameBoardArray.zobristKey(cell, val);
+        b[cell] = val;
+    }
+
+    /**
+     * Change to hash() of the board written since the last call, which is
+     * reset: hash(b) before those writes XOR this equals hash(b) after them.
+     * Only meaningful while all writes went to one board.
+     */
+    long takeHashDelta() {
+        long delta = hashDelta;
+        hashDelta = 0L;
+        return delta;
+    }
+
+    /** Merges at cell while its group is big enough; returns the chain's score product. */
+    long resolveChain(int[] b, int cell, int level) {
+        long product = 0L;
+        int length = 0;
+        while (true) {
+            int val = b[cell];
+            int size = fillGroup(b, cell, val);
+            if (size < GameRules.MIN_COMBO_SIZE) break;
+            for (int i = 0; i < size; i++) write(b, queue[i], -1);
+            write(b, cell, val + GameRules.MERGE_VALUE_STEP);
+            long combo = GameRules.calculateMergeScore(size, val, level);
+            product = (length == 0) ? combo : GameRules.safeMultiply(product, combo);
+            length++;
+        }
+        lastChainLength = length;
+        return product;
+    }
+
+    /** Number of merges done by the last resolveChain. */
+    int lastChainLength() {
+        return lastChainLength;
+    }
+
+    /** Applies level-ups for score and prunes values that dropped out of the spawn window. */
+    int advanceLevel(int[] b, long score, int level) {
+        int newLevel = GameRules.getLevelForScore(score, level);
+        if (newLevel != level) {
+            int min = LevelProgression.getMinSpawnIndex(newLevel);
+            for (int i = 0; i < n; i++) {
+                if (b[i] >= 0 && b[i] < min) write(b, i, -1);
+            }
+        }
+        return newLevel;
+    }
+
+    /** Size of the val group containing cell; members are left in queue[0..size). */
+    int fillGroup(int[] b, int cell, int val) {
+        newStamp();
+        int head = 0, tail = 0;
+        stamp[cell] = currentStamp;
+        queue[tail++] = cell;
+        while (head < tail) {
+            int c = queue[head++];
+            int x = c % w;
+            if (x > 0)      tail = visit(b, c - 1, val, tail);
+            if (x < w - 1)  tail = visit(b, c + 1, val, tail);
+            if (c >= w)     tail = visit(b, c - w, val, tail);
+            if (c + w < n)  tail = visit(b, c + w, val, tail);
+        }
+        return tail;
+    }
+
+    private int visit(int[] b, int c, int val, int tail) {
+        if (b[c] == val && stamp[c] != currentStamp) {
+            stamp[c] = currentStamp;
+            queue[tail++] = c;
+        }
+        return tail;
+    }
+
+    private void newStamp() {
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+    }
+
+    int countFree(int[] b) {
+        int free = 0;
+        for (int i = 0; i < n; i++) if (b[i] < 0) free++;
+        return free;
+    }
+
+    /** Index of the k-th empty cell in row-major order, or -1. */
+    int nthFree(int[] b, int k) {
+        for (int i = 0; i < n; i++) {
+            if (b[i] < 0 && k-- == 0) return i;
+        }
+        return -1;
+    }
+
+    /** Labels empty regions 1, 2, ...; occupied cells get 0. Returns the region count. */
+    int labelRegions(int[] b, int[] label) {
+        Arrays.fill(label, 0);
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            if (b[i] >= 0 || label[i] != 0) continue;
+            label[i] = ++next;
+            int head = 0, tail = 0;
+            queue[tail++] = i;
+            while (head < tail) {
+                int c = queue[head++];
+                int x = c % w;
+                if (x > 0     && b[c - 1] < 0 && label[c - 1] == 0) { label[c - 1] = next; queue[tail++] = c - 1; }
+                if (x < w - 1 && b[c + 1] < 0 && label[c + 1] == 0) { label[c + 1] = next; queue[tail++] = c + 1; }
+                if (c >= w    && b[c - w] < 0 && label[c - w] == 0) { label[c - w] = next; queue[tail++] = c - w; }
+                if (c + w < n && b[c + w] < 0 && label[c + w] == 0) { label[c + w] = next; queue[tail++] = c + w; }
+            }
+        }
+        return next;
+    }
+
+    /** True if the piece at src can move to the empty cell dst under the given labels. */
+    boolean canMove(int[] b, int[] label, int src, int dst) {
+        if (b[src] < 0 || b[dst] >= 0) return false;
+        return touches(label, src, label[dst]);
+    }
+
+    /**
+     * True if the piece at src can swap with the occupied cell partner: the two
+     * are neighbours or both touch the same empty region.
+     */
+    boolean canSwap(int[] b, int[] label, int src, int partner) {
+        if (src == partner || b[src] < 0 || b[partner] < 0) return false;
+        int x = partner % w;
+        return (x > 0       && (partner - 1 == src || touches(label, src, label[partner - 1])))
+            || (x < w - 1   && (partner + 1 == src || touches(label, src, label[partner + 1])))
+            || (partner >= w    && (partner - w == src || touches(label, src, label[partner - w])))
+            || (partner + w < n && (partner + w == src || touches(label, src, label[partner + w])));
+    }
+
+    /** True if a neighbour of cell lies in the empty region l; never for l == 0. */
+    private boolean touches(int[] label, int cell, int l) {
+        if (l == 0) return false;
+        int x = cell % w;
+        return (x > 0 && label[cell - 1] == l) || (x < w - 1 && label[cell + 1] == l)
+                || (cell >= w && label[cell - w] == l) || (cell + w < n && label[cell + w] == l);
+    }
+
+    /** Cells around dst, other than src, holding the value at src. */
+    int sameValueNeighbours(int[] b, int src, int dst) {
+        int val = b[src], x = dst % w, count = 0;
+        if (x > 0       && dst - 1 != src && b[dst - 1] == val) count++;
+        if (x < w - 1   && dst + 1 != src && b[dst + 1] == val) count++;
+        if (dst >= w    && dst - w != src && b[dst - w] == val) count++;
+        if (dst + w < n && dst + w != src && b[dst + w] == val) count++;
+        return count;
+    }
+
+    /**
+     * Writes every normal move on b into moves (grown as needed), in row-major
+     * source then target order. label receives the empty-region labels.
+     *
+     * @return the possibly reallocated moves array; the count is in moveCount()
+     */
+    int[] generateMoves(int[] b, int[] label, int[] moves) {
+        labelRegions(b, label);
+        int count = 0;
+        for (int src = 0; src < n; src++) {
+            if (b[src] < 0) continue;
+            int x = src % w;
+            int l0 = (x > 0)       ? label[src - 1] : 0;
+            int l1 = (x < w - 1)   ? label[src + 1] : 0;
+            int l2 = (src >= w)    ? label[src - w] : 0;
+            int l3 = (src + w < n) ? label[src + w] : 0;
+            if ((l0 | l1 | l2 | l3) == 0) continue;
+            for (int dst = 0; dst < n; dst++) {
+                int l = label[dst];
+                if (l == 0 || (l != l0 && l != l1 && l != l2 && l != l3)) continue;
+                if (count == moves.length) {
+                    moves = Arrays.copyOf(moves, Math.max(16, count * 2));
+                }
+                moves[count++] = encode(src, dst);
+            }
+        }
+        moveCount = count;
+        return moves;
+    }
+
+    /** Number of moves written by the last generateMoves or actions by the last generateActions. */
+    int moveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Writes every legal {@link GameAction} on b into actions (grown as needed):
+     * the normal moves in generateMoves order, then the bonuses held, in
+     * SelfPlayBot.IDX_* order from jump to undo. Bonus uses that cannot change the
+     * board are left out: swaps of equal values, bombs, line deletes and shifts
+     * over empty cells. Color Clear gets one action per value, on its first cell.
+     *
+     * @param bonusCounts counts in SelfPlayBot.IDX_* order
+     * @param canUndo     whether there is a move to take back
+     * @return the possibly reallocated actions array; the count is in moveCount()
+     */
+    int[] generateActions(int[] b, int[] label, int[] bonusCounts, boolean canUndo, int[] actions) {
+        actions = generateMoves(b, label, actions);
+        int count = moveCount;
+        for (int i = 0; i < count; i++) {
+            actions[i] = GameAction.normal(source(actions[i]), target(actions[i]));
+        }
+        if (bonusCounts[SelfPlayBot.IDX_JUMP] > 0) {
+            for (int src = 0; src < n; src++) {
+                if (b[src] < 0) continue;
+                for (int dst = 0; dst < n; dst++) {
+                    if (b[dst] >= 0) continue;
+                    actions = ensureCapacity(actions, count);
+                    actions[count++] = GameAction.jump(src, dst);
+                }
+            }
+        }
+        if (bonusCounts[SelfPlayBot.IDX_SWAP] > 0) {
+            for (int src = 0; src < n; src++) {
+                if (b[src] < 0) continue;
+                for (int partner = 0; partner < n; partner++) {
+                    if (b[partner] == b[src] || !canSwap(b, label, src, partner)) continue;
+                    actions = ensureCapacity(actions, count);
+                    actions[count++] = GameAction.swap(src, partner);
+                }
+            }
+        }
+        if (bonusCounts[SelfPlayBot.IDX_DISSOLVE] > 0) {
+            for (int cell = 0; cell < n; cell++) {
+                if (b[cell] < 0) continue;
+                actions = ensureCapacity(actions, count);
+                actions[count++] = GameAction.dissolve(cell);
+            }
+        }
+        if (bonusCounts[SelfPlayBot.IDX_BOMB] > 0) {
+            for (int cell = 0; cell < n; cell++) {
+                if (!blastHitsAnything(b, cell)) continue;
+                actions = ensureCapacity(actions, count);
+                actions[count++] = GameAction.bomb(cell);
+            }
+        }
+        if (bonusCounts[SelfPlayBot.IDX_COLOR_CLEAR] > 0) {
+            newStamp();
+            for (int cell = 0; cell < n; cell++) {
+                int val = b[cell];
+                if (val < 0) continue;
+                if (val >= valueSeen.length) valueSeen = Arrays.copyOf(valueSeen, Math.max(val + 1, valueSeen.length * 2));
+                if (valueSeen[val] == currentStamp) continue;
+                valueSeen[val] = currentStamp;
+                actions = ensureCapacity(actions, count);
+                actions[count++] = GameAction.colorClear(cell);
+            }
+        }
+        boolean delLine = bonusCounts[SelfPlayBot.IDX_DEL_LINE] > 0;
+        boolean shift   = bonusCounts[SelfPlayBot.IDX_SHIFT_LINE] > 0;
+        if (delLine || shift) {
+            for (int line = 0; line < h + w; line++) {
+                boolean isRow = line < h;
+                int index = isRow ? line : line - h;
+                if (isLineEmpty(b, index, isRow)) continue;
+                actions = ensureCapacity(actions, count + 2); // room for three
+                if (delLine) actions[count++] = GameAction.delLine(index, isRow);
+                if (shift) {
+                    actions[count++] = GameAction.shiftLine(index, isRow, false);
+                    actions[count++] = GameAction.shiftLine(index, isRow, true);
+                }
+            }
+        }
+        if (canUndo && bonusCounts[SelfPlayBot.IDX_UNDO] > 0) {
+            actions = ensureCapacity(actions, count);
+            actions[count++] = GameAction.undo();
+        }
+        moveCount = count;
+        return actions;
+    }
+
+    private static int[] ensureCapacity(int[] actions, int count) {
+        return (count < actions.length) ? actions : Arrays.copyOf(actions, Math.max(16, count * 2));
+    }
+
+    private boolean blastHitsAnything(int[] b, int centre) {
+        int cx = centre % w, cy = centre / w;
+        for (int y = Math.max(0, cy - 1); y <= Math.min(h - 1, cy + 1); y++)
+            for (int x = Math.max(0, cx - 1); x <= Math.min(w - 1, cx + 1); x++)
+                if (b[y * w + x] >= 0) return true;
+        return false;
+    }
+
+    private boolean isLineEmpty(int[] b, int index, boolean isRow) {
+        int length = isRow ? w : h;
+        for (int i = 0; i < length; i++) {
+            if (b[isRow ? index * w + i : i * w + index] >= 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Keeps up to limit of moves[0..count) in selected, ordered by how many
+     * same-value cells touch the target; earlier moves win ties.
+     *
+     * @param keys scratch of at least limit entries
+     * @return number of moves kept
+     */
+    int selectMoves(int[] b, int[] moves, int count, int[] selected, int[] keys, int limit) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int key = sameValueNeighbours(b, source(move), target(move));
+            if (kept == limit && key <= keys[kept - 1]) continue;
+            int pos = (kept < limit) ? kept++ : kept - 1;
+            while (pos > 0 && keys[pos - 1] < key) {
+                keys[pos]     = keys[pos - 1];
+                selected[pos] = selected[pos - 1];
+                pos--;
+            }
+            keys[pos]     = key;
+            selected[pos] = move;
+        }
+        return kept;
+    }
+}
@@ -2,7 +2,9 @@ package com.example.androidstudio2dgamedevelopment;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ActivityNotFoundException;
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -10,6 +12,7 @@ import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.GradientDrawable;
+import android.net.Uri;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.GestureDetector;
@@ -22,9 +25,13 @@ import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.core.content.FileProvider;
+
+import java.io.File;
 
 /**
  * Game manages all objects in the game and is responsible for updating all states
@@ -33,6 +40,8 @@ import androidx.core.content.ContextCompat;
 public class Game extends SurfaceView implements SurfaceHolder.Callback {
 
     private static final String TAG = "Game";
+    /** Appended to the package name; must match the provider authority in the manifest. */
+    private static final String REPLAY_AUTHORITY_SUFFIX = ".replays";
 
     private final GameBoard gameBoard;
     private GameLoop gameLoop;
@@ -62,6 +71,8 @@ public class Game extends SurfaceView implements SurfaceHolder.Callback {
                 if (idx >= 0) {
                     gameBoard.deselectAllBonuses();
                     showBonusInfoPopup(idx);
+                } else if (gameBoard.isScoreCardAt(bx, by)) {
+                    shareLastReplay();
                 }
             }
         });
@@ -84,6 +95,11 @@ public class Game extends SurfaceView implements SurfaceHolder.Callback {
     @Override
     public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
         Log.d(TAG, "surfaceDestroyed()");
+        // the loop must not run on a released board; surfaceCreated starts a new one
+        if (gameLoop != null) {
+            gameLoop.stopLoop();
+        }
+        gameBoard.release();
     }
 
     @Override
@@ -145,6 +161,29 @@ public class Game extends SurfaceView implements SurfaceHolder.Callback {
         gameLoop.stopLoop();
     }
 
+    /** Offers the last finished game's replay file to other apps. */
+    private void shareLastReplay() {
+        Context ctx = getContext();
+        if (!(ctx instanceof Activity)) return;
+        File file = gameBoard.getLastReplayFile();
+        ((Activity) ctx).runOnUiThread(() -> {
+            if (!file.isFile()) {
+                Toast.makeText(ctx, "Noch kein Replay gespeichert", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Uri uri = FileProvider.getUriForFile(ctx, ctx.getPackageName() + REPLAY_AUTHORITY_SUFFIX, file);
+            Intent send = new Intent(Intent.ACTION_SEND)
+                    .setType("application/octet-stream")
+                    .putExtra(Intent.EXTRA_STREAM, uri)
+                    .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            try {
+                ctx.startActivity(Intent.createChooser(send, "Replay teilen"));
+            } catch (ActivityNotFoundException e) {
+                Log.w(TAG, "no app to share the replay with", e);
+            }
+        });
+    }
+
     private void showBuyConfirmDialog(final int index) {
         Context ctx = getContext();
         if (!(ctx instanceof Activity)) return;
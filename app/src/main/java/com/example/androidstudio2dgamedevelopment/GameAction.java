@@ -0,0 +1,198 @@
+package com.example.androidstudio2dgamedevelopment;
+
+/**
+ * Every player action packed into one int: the type in the low 4 bits, then two
+ * 14-bit operands. Cells are flat indices y * w + x, so boards of up to 16384
+ * cells fit. NONE (-1) stands for no action.
+ *
+ * <pre>
+ * NORMAL, JUMP, SWAP      first = source cell, second = target cell
+ * DISSOLVE, COLOR_CLEAR   first = tapped cell
+ * BOMB                    first = centre cell
+ * DEL_LINE                first = row or column index, second = LINE_ROW or 0
+ * SHIFT_LINE              first = row or column index, second = LINE_ROW | SHIFT_FORWARD bits
+ * UNDO                    no operands
+ * BUY                     first = bonus index in SelfPlayBot.IDX_* order
+ * </pre>
+ */
+final class GameAction {
+
+    static final int NORMAL      = 0;
+    static final int JUMP        = 1;
+    static final int SWAP        = 2;
+    static final int DISSOLVE    = 3;
+    static final int BOMB        = 4;
+    static final int COLOR_CLEAR = 5;
+    static final int DEL_LINE    = 6;
+    static final int SHIFT_LINE  = 7;
+    static final int UNDO        = 8;
+    static final int BUY         = 9;
+
+    static final int NONE = -1;
+
+    /** Line operand bit: the line is a row, otherwise a column. */
+    static final int LINE_ROW = 1;
+    /** SHIFT_LINE operand bit: cells move towards higher indices (right or down). */
+    static final int SHIFT_FORWARD = 2;
+
+    static final int MAX_OPERAND = (1 << 14) - 1;
+    /** Largest board, in cells, whose cell indices fit an operand. */
+    static final int MAX_CELLS = MAX_OPERAND + 1;
+
+    private static final int TYPE_BITS = 4;
+    private static final int OPERAND_BITS = 14;
+
+    /** Bonus spent by each type, indexed by type; -1 for NORMAL and BUY. */
+    private static final int[] BONUS_INDEX = {
+            -1,
+            SelfPlayBot.IDX_JUMP,
+            SelfPlayBot.IDX_SWAP,
+            SelfPlayBot.IDX_DISSOLVE,
+            SelfPlayBot.IDX_BOMB,
+            SelfPlayBot.IDX_COLOR_CLEAR,
+            SelfPlayBot.IDX_DEL_LINE,
+            SelfPlayBot.IDX_SHIFT_LINE,
+            SelfPlayBot.IDX_UNDO,
+            -1
+    };
+
+    private GameAction() {
+    }
+
+    /** Whether every cell of a width x height board fits an operand. */
+    static boolean fits(int width, int height) {
+        return width > 0 && height > 0 && (long) width * height <= MAX_CELLS;
+    }
+
+    /** Throws IllegalArgumentException unless a width x height board {@link #fits}. */
+    static void checkBoardSize(int width, int height) {
+        if (!fits(width, height)) {
+            throw new IllegalArgumentException("Board must have 1 to " + MAX_CELLS + " cells: "
+                    + width + "x" + height);
+        }
+    }
+
+    static int encode(int type, int first, int second) {
+        return (second << (TYPE_BITS + OPERAND_BITS)) | (first << TYPE_BITS) | type;
+    }
+
+    static int type(int action) {
+        return action & ((1 << TYPE_BITS) - 1);
+    }
+
+    static int first(int action) {
+        return (action >>> TYPE_BITS) & MAX_OPERAND;
+    }
+
+    static int second(int action) {
+        return action >>> (TYPE_BITS + OPERAND_BITS);
+    }
+
+    static int normal(int src, int dst) {
+        return encode(NORMAL, src, dst);
+    }
+
+    static int jump(int src, int dst) {
+        return encode(JUMP, src, dst);
+    }
+
+    static int swap(int src, int partner) {
+        return encode(SWAP, src, partner);
+    }
+
+    static int dissolve(int cell) {
+        return encode(DISSOLVE, cell, 0);
+    }
+
+    static int bomb(int centre) {
+        return encode(BOMB, centre, 0);
+    }
+
+    static int colorClear(int cell) {
+        return encode(COLOR_CLEAR, cell, 0);
+    }
+
+    static int delLine(int index, boolean isRow) {
+        return encode(DEL_LINE, index, isRow ? LINE_ROW : 0);
+    }
+
+    static int shiftLine(int index, boolean isRow, boolean forward) {
+        return encode(SHIFT_LINE, index, (isRow ? LINE_ROW : 0) | (forward ? SHIFT_FORWARD : 0));
+    }
+
+    static int undo() {
+        return encode(UNDO, 0, 0);
+    }
+
+    static int buy(int bonus) {
+        return encode(BUY, bonus, 0);
+    }
+
+    /** DEL_LINE and SHIFT_LINE: whether the line is a row. */
+    static boolean isRow(int action) {
+        return (second(action) & LINE_ROW) != 0;
+    }
+
+    /** SHIFT_LINE: whether cells move right or down. */
+    static boolean isForward(int action) {
+        return (second(action) & SHIFT_FORWARD) != 0;
+    }
+
+    /** Bonus the action spends, in SelfPlayBot.IDX_* order; -1 for a normal move or a purchase. */
+    static int bonusIndex(int action) {
+        return BONUS_INDEX[type(action)];
+    }
+
+    /** Same action as d on a board w cells wide; NONE for null. */
+    static int fromDecision(SelfPlayBot.BotDecision d, int w) {
+        if (d == null) return NONE;
+        int p1 = d.p1y * w + d.p1x, p2 = d.p2y * w + d.p2x;
+        switch (d.type) {
+            case NORMAL:      return normal(p1, p2);
+            case JUMP:        return jump(p1, p2);
+            case DISSOLVE:    return dissolve(p1);
+            case BOMB:        return bomb(p1);
+            case COLOR_CLEAR: return colorClear(p1);
+            case DEL_LINE:    return delLine(d.p1x, d.flag);
+            default:          return NONE;
+        }
+    }
+
+    /** BotDecision for action on a board w cells wide; null for NONE and the types it cannot express. */
+    static SelfPlayBot.BotDecision toDecision(int action, int w) {
+        if (action == NONE) return null;
+        int a = first(action), b = second(action);
+        switch (type(action)) {
+            case NORMAL:      return SelfPlayBot.BotDecision.normal(a % w, a / w, b % w, b / w);
+            case JUMP:        return SelfPlayBot.BotDecision.jump(a % w, a / w, b % w, b / w);
+            case DISSOLVE:    return SelfPlayBot.BotDecision.dissolve(a % w, a / w);
+            case BOMB:        return SelfPlayBot.BotDecision.bomb(a % w, a / w);
+            case COLOR_CLEAR: return SelfPlayBot.BotDecision.colorClear(a % w, a / w);
+            case DEL_LINE:    return SelfPlayBot.BotDecision.delLine(a, isRow(action));
+            default:          return null;
+        }
+    }
+
+    static String toString(int action, int w) {
+        if (action == NONE) return "NONE";
+        int a = first(action), b = second(action);
+        switch (type(action)) {
+            case NORMAL:      return "NORMAL " + cell(a, w) + "->" + cell(b, w);
+            case JUMP:        return "JUMP " + cell(a, w) + "->" + cell(b, w);
+            case SWAP:        return "SWAP " + cell(a, w) + "<->" + cell(b, w);
+            case DISSOLVE:    return "DISSOLVE " + cell(a, w);
+            case BOMB:        return "BOMB " + cell(a, w);
+            case COLOR_CLEAR: return "COLOR_CLEAR " + cell(a, w);
+            case DEL_LINE:    return "DEL_LINE " + (isRow(action) ? "row " : "col ") + a;
+            case SHIFT_LINE:  return "SHIFT_LINE " + (isRow(action) ? "row " : "col ") + a
+                                     + (isForward(action) ? " +1" : " -1");
+            case UNDO:        return "UNDO";
+            case BUY:         return "BUY " + a;
+            default:          return "UNKNOWN " + action;
+        }
+    }
+
+    private static String cell(int c, int w) {
+        return "(" + (c % w) + "," + (c / w) + ")";
+    }
+}
@@ -9,18 +9,23 @@ import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.util.Log;
 import android.view.MotionEvent;
 
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class GameBoard {
 
+    private static final String TAG = "GameBoard";
     private static final int RECT_BORDER = 12;
     private static final float TEXT_HEIGHT = 100.0f;
     private static final int STATUS_FIELD_HEIGHT = 620;
@@ -28,7 +33,7 @@ public class GameBoard {
     private static final int STATUS_LABEL_TEXT_SIZE = 28;
     private static final int MOTION_STEPS = 10;
     private static final int GAME_OVER_STEPS = 10;
-    private static final int DROP_INS_AFTER_MOTION = 3;
+    private static final int DROP_INS_AFTER_MOTION = GameRules.DROP_INS_AFTER_MOTION;
     private static final int ALERT_TIME = 30;
     private static final int MERGE_ANIMATION_TIME = 30;
     private static final int SELECTION_PULSE_TIME = 4;
@@ -83,15 +88,27 @@ public class GameBoard {
             SECRET_CODE_SCORE,
             SECRET_CODE_SCORE
     };
+    // Hidden code 5: LEVEL x4 -> toggle turbo self-play
+    private static final int[] SECRET_CODE_SEQUENCE_TURBO = {
+            SECRET_CODE_LEVEL,
+            SECRET_CODE_LEVEL,
+            SECRET_CODE_LEVEL,
+            SECRET_CODE_LEVEL
+    };
     private static final int[][] SECRET_CODE_SEQUENCES = {
             SECRET_CODE_SEQUENCE_BONUS,
             SECRET_CODE_SEQUENCE_SCORE_BOOST,
             SECRET_CODE_SEQUENCE_RESET_HIGHSCORE,
-            SECRET_CODE_SEQUENCE_SELF_PLAY
+            SECRET_CODE_SEQUENCE_SELF_PLAY,
+            SECRET_CODE_SEQUENCE_TURBO
     };
     private static final int SELF_PLAY_MOVE_DELAY   = 50;   // frames between moves
     private static final int SELF_PLAY_TAP_GAP      = 14;   // frames between start and target tap
     private static final int SELF_PLAY_TAP_ANIM_DUR = 22;   // frames for tap-ripple animation
+    private static final long SELF_PLAY_SEARCH_BUDGET_NANOS = 20_000_000L; // lookahead time per move, off the loop thread
+    private static final String REPLAY_DIR = "replays";
+    private static final String LAST_REPLAY_FILE = "last.rpl";
+    private static final long TURBO_STOP_TIMEOUT_MS = 1000L;               // wait for the turbo worker's last turn on release
     private static final int HUD_CORNER_RADIUS = 26;
     private static final int HUD_PANEL_COLOR = 0xff16213a;
     private static final int HUD_PANEL_BORDER_COLOR = 0xff32518b;
@@ -110,22 +127,16 @@ public class GameBoard {
     // Bump this value to trigger a one-time highscore reset on next launch
     private static final int HIGHSCORE_RESET_VERSION = 2;
 
-    private static final int MIN_COMBO_SIZE = 4;
-    private static final long BASE_COMBO_SCORE = 4L;
-    private static final long BASE_LEVEL_SCORE = 25L;
-    private static final long BASE_BONUS_STEP = 75L;
-    private static final long BONUS_STEP_PER_LEVEL = 40L;
-    private static final long BUY_COST_UNDO = 200L;
-    private static final long BUY_COST_SWAP = 400L;
-    private static final long BUY_COST_JUMP = 630L;
-    private static final long BUY_COST_DISSOLVE = 300L;
-    private static final long BUY_COST_DEL_LINE = 800L;
-    private static final long BUY_COST_SHIFT_LINE = 565L;
-    private static final long BUY_COST_COLOR_CLEAR = 1000L;
-    private static final long BUY_COST_BOMB = 1500L;
+    private static final int MIN_COMBO_SIZE = GameRules.MIN_COMBO_SIZE;
+    private static final long BUY_COST_UNDO = GameRules.BUY_COST_UNDO;
+    private static final long BUY_COST_SWAP = GameRules.BUY_COST_SWAP;
+    private static final long BUY_COST_JUMP = GameRules.BUY_COST_JUMP;
+    private static final long BUY_COST_DISSOLVE = GameRules.BUY_COST_DISSOLVE;
+    private static final long BUY_COST_DEL_LINE = GameRules.BUY_COST_DEL_LINE;
+    private static final long BUY_COST_SHIFT_LINE = GameRules.BUY_COST_SHIFT_LINE;
+    private static final long BUY_COST_COLOR_CLEAR = GameRules.BUY_COST_COLOR_CLEAR;
+    private static final long BUY_COST_BOMB = GameRules.BUY_COST_BOMB;
     private static final int BOMB_ANIMATION_STEPS = 35;
-    private static final int BONUS_AWARD_AMOUNT = 1;
-    private static final double BONUS_COUNT_DAMPING = 0.5d;
     private static final int   HUD_FLIP_DURATION    = 18;
     private static final int   HUD_SLOT_SCORE       = 0;
     private static final int   HUD_SLOT_LEVEL       = 1;
@@ -136,16 +147,7 @@ public class GameBoard {
     private static final int   HUD_CARD_BG_COLOR    = 0xff1a2a42;
     private static final int   HUD_CARD_BORDER_COLOR = 0xff3a5a8a;
     // Bonus order must stay in sync with counters, icons, buy buttons and animation handling.
-    private static final long[] BONUS_BUY_COSTS = {
-            BUY_COST_UNDO,
-            BUY_COST_DISSOLVE,
-            BUY_COST_SWAP,
-            BUY_COST_BOMB,
-            BUY_COST_SHIFT_LINE,
-            BUY_COST_JUMP,
-            BUY_COST_DEL_LINE,
-            BUY_COST_COLOR_CLEAR
-    };
+    private static final long[] BONUS_BUY_COSTS = GameRules.BONUS_BUY_COSTS;
     private static final int[] BONUS_DRAWABLE_IDS = {
             R.drawable.undo_circle_icon,
             R.drawable.delete_block_icon,
@@ -209,21 +211,20 @@ public class GameBoard {
 
 
     private final SharedPreferences prefs;
-    private final Random rand;
     private final int[] colorArray;
 
-    // scoring
-    private long score;
-    private int level;
+    // rules, score, level and bonus counts
+    private final GameEngine engine;
+    // seeds one game after the other; the engine's seed reproduces the current game
+    private final GameRandom gameSeeds;
+    // the current game as a replay, for bug reports
+    private final Replay.Recorder replayRecorder = new Replay.Recorder();
     private long highScore;
     private boolean highscoreLockedByCheat;
 
     private boolean highscoreExceeded;
     private long autoHighScore;
     private boolean autoHighscoreExceeded;
-    private long nextScoreForBonus;
-    private long chainScoreProduct;
-    private int chainLength;
     private boolean boardWideMergeScanActive;
 
     private final Paint textPaint;
@@ -271,9 +272,6 @@ public class GameBoard {
     private final Paint levelAnimationPaint;
     private final Paint levelHintPaint;
 
-    // counter for dropping in new cells after motion
-    private int dropInCount;
-
     // drop in animation
     private boolean dropInAnimationRunning;
     private int dropInAnimationCounter;
@@ -336,6 +334,13 @@ public class GameBoard {
     private int     selfPlayDelayCounter;
     private int[][] selfPlayQueue;        // {pixelX, pixelY, motionAction, delayFrames}
     private int     selfPlayQueueIdx;
+    private SelfPlayWorker selfPlayWorker;        // computes decisions off the game loop thread
+    private SelfPlayWorker.Result selfPlayResult; // latest decision, valid for result.version only
+    private boolean turboActive;                   // self-play resolves moves at once, only results are drawn
+    private TurboWorker turboWorker;               // plays turbo games off the game loop thread
+    private boolean turboRunning;                  // engine handed to turboWorker, not to be touched here
+    private TurboWorker.Frame turboFrame;          // drawn instead of the engine while turboRunning
+    private final ConcurrentLinkedQueue<Runnable> uiActions = new ConcurrentLinkedQueue<>(); // input from the UI thread
     private int selfPlayTapAnimX;
     private int selfPlayTapAnimY;
     private int selfPlayTapAnimCounter;
@@ -440,14 +445,6 @@ public class GameBoard {
     private Drawable shiftLine;
     private Drawable colorClearDrawable;
     private Drawable bombIcon;
-    private int undoCounter;
-    private int swapCounter;
-    private int jumpCounter;
-    private int dissolveCounter;
-    private int delLineCounter;
-    private int shiftLineCounter;
-    private int colorClearCounter;
-    private int bombCounter;
 
     private boolean undoSelected;
     private boolean swapSelected;
@@ -504,6 +501,14 @@ public class GameBoard {
     private Rect highlightRect;
 
     public GameBoard(Context context, SharedPreferences p) {
+        this(context, p, new GameRandom());
+    }
+
+    /**
+     * @param gameSeeds seeds every new game, the first one included; a generator
+     *                  restarted from the same seed deals the same games again
+     */
+    GameBoard(Context context, SharedPreferences p, GameRandom gameSeeds) {
 
         this.prefs = p;
 
@@ -523,6 +528,34 @@ public class GameBoard {
         this.autoHighScore = prefs.getLong(PREF_KEY_AUTO_HIGHSCORE, 0);
         this.highscoreLockedByCheat = false;
 
+        this.gameSeeds = gameSeeds;
+        engine = new GameEngine(width, height, gameSeeds.nextLong());
+        engine.setRecorder(replayRecorder);
+        engine.setListener(new GameEngine.Listener() {
+            @Override
+            public void onLevelUp(int level, List<Coord> cellsToPrune) {
+                if (turboActive) { // called on the turbo worker's thread
+                    return;
+                }
+                if (cellsToPrune.isEmpty()) {
+                    ensureBoardCanRefillIfEmpty();
+                } else {
+                    startLevelPruneAnimation(cellsToPrune);
+                }
+                startLevelAnimation();
+            }
+
+            @Override
+            public void onBonusesAwarded(int[] bonuses) {
+                if (turboActive) {
+                    return;
+                }
+                bonusWin  = bonuses[0];
+                bonusWin2 = bonuses[1];
+                bonusWin3 = bonuses[2];
+                startBonusAnimation();
+            }
+        });
 
         updateBonusValues();
 
@@ -532,7 +565,7 @@ public class GameBoard {
         textPaint.setColor(TEXT_COLOR_WHITE);
         textPaint.setTextSize(TEXT_HEIGHT);
 
-        gameBoardArray = new GameBoardArray(width, height);
+        gameBoardArray = engine.getBoard();
 
         rectArray = new Rect[width][height];
         paintArray = new Paint[width][height];
@@ -584,7 +617,6 @@ public class GameBoard {
         levelHintPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         levelHintPaint.setColor(TEXT_COLOR_WHITE);
 
-        rand = new Random();
         motionPath = new ArrayList<>();
         inverseMotionPath = new ArrayList<>();
         redPaint = new Paint();
@@ -628,32 +660,14 @@ public class GameBoard {
 
 
     private void gameInit() {
-        gameBoardArray.clear();
-        gameBoardArray.initCells(4);
+        engine.newGame(gameSeeds.nextLong());
         status = statusT.SELECT_START_POSITION;
         startMotion = true;
-        score = 0;
-        chainScoreProduct = 0L;
-        chainLength = 0;
-
-        nextScoreForBonus = getBonusStepForLevel(1);
 
         highscoreExceeded = false;
         autoHighscoreExceeded = false;
 
-        undoCounter = 0;
-        swapCounter = 0;
-        jumpCounter = 0;
-        dissolveCounter = 0;
-        delLineCounter = 0;
-        shiftLineCounter = 0;
-        colorClearCounter = 0;
-        bombCounter = 0;
-        addBonusCount(getWeightedRandomBonusIndex(), 1);
-        addBonusCount(getWeightedRandomBonusIndex(), 1);
-        addBonusCount(getWeightedRandomBonusIndex(), 1);
-
-        deselectAllBonuses();
+        clearBonusSelection();
         secretCodeProgress = new int[SECRET_CODE_SEQUENCES.length];
         secretCodeLastTapMs = 0L;
         shiftBonusValues = null;
@@ -686,8 +700,7 @@ public class GameBoard {
         bonusWin2 = -1;
         bonusWin3 = -1;
 
-        level = 1;
-        levelText = "Level: " + level;
+        levelText = "Level: " + engine.getLevel();
         levelHintText = getNextLevelHintText();
         updateBonusValues();
         resetHudDisplayedValues();
@@ -699,7 +712,7 @@ public class GameBoard {
     }
 
     private int getColor(int x, int y) {
-        int val = gameBoardArray.get(x, y);
+        int val = getShownCell(x, y);
         if (val == -1) {
             return getColor(0x90, 0x90, 0x90);
         }
@@ -1064,11 +1077,11 @@ public class GameBoard {
         float cornerRadius = Math.min(HUD_CORNER_RADIUS, (cardBottom - cardTop) / 3.0f);
         statusScoreRect = new Rect((int) cardLeft, (int) cardTop, (int) (cardLeft + cardWidth), (int) cardBottom);
         drawStatusPanel(canvas, cardLeft, cardTop, cardLeft + cardWidth, cardBottom,
-                "SCORE", getScoreText(score), HUD_SCORE_ACCENT_COLOR, cornerRadius, HUD_SLOT_SCORE);
+                "SCORE", getScoreText(getShownScore()), HUD_SCORE_ACCENT_COLOR, cornerRadius, HUD_SLOT_SCORE);
         cardLeft += cardWidth + cardGap;
         statusLevelRect = new Rect((int) cardLeft, (int) cardTop, (int) (cardLeft + cardWidth), (int) cardBottom);
         drawStatusPanel(canvas, cardLeft, cardTop, cardLeft + cardWidth, cardBottom,
-                "LEVEL", Integer.toString(level), HUD_LEVEL_ACCENT_COLOR, cornerRadius, HUD_SLOT_LEVEL);
+                "LEVEL", Integer.toString(getShownLevel()), HUD_LEVEL_ACCENT_COLOR, cornerRadius, HUD_SLOT_LEVEL);
         cardLeft += cardWidth + cardGap;
         statusBestRect = new Rect((int) cardLeft, (int) cardTop, (int) (cardLeft + cardWidth), (int) cardBottom);
         if (selfPlayActive) {
@@ -1144,8 +1157,8 @@ public class GameBoard {
     }
 
     private void resetHudDisplayedValues() {
-        initHudSlot(HUD_SLOT_SCORE, getScoreText(score));
-        initHudSlot(HUD_SLOT_LEVEL, Integer.toString(level));
+        initHudSlot(HUD_SLOT_SCORE, getScoreText(engine.getScore()));
+        initHudSlot(HUD_SLOT_LEVEL, Integer.toString(engine.getLevel()));
         initHudSlot(HUD_SLOT_BEST,  getScoreText(selfPlayActive ? autoHighScore : highScore));
     }
 
@@ -1162,8 +1175,8 @@ public class GameBoard {
     }
 
     private void updateHudFlips() {
-        updateSlotTargets(HUD_SLOT_SCORE, getScoreText(score));
-        updateSlotTargets(HUD_SLOT_LEVEL, Integer.toString(level));
+        updateSlotTargets(HUD_SLOT_SCORE, getScoreText(getShownScore()));
+        updateSlotTargets(HUD_SLOT_LEVEL, Integer.toString(getShownLevel()));
         updateSlotTargets(HUD_SLOT_BEST,  getScoreText(selfPlayActive ? autoHighScore : highScore));
 
         for (int slot = 0; slot < 3; slot++) {
@@ -1675,7 +1688,12 @@ public class GameBoard {
     }
 
     public void update() {
+        boolean turboBusy = tickTurbo();
         updateHudFlips();
+        if (turboBusy) {
+            return;
+        }
+        runUiActions();
         //-----------------------------------------------------
         // general animation
         if (levelAnimationCounter > 0) {
@@ -1708,6 +1726,10 @@ public class GameBoard {
             animateShiftBonus();
             return;
         }
+        if (turboActive && (status == statusT.SELECT_START_POSITION || status == statusT.GAME_OVER)) {
+            startTurbo();
+            return;
+        }
 
         if (lineSelectionActive) {
             shiftSelectionPulseTick = (shiftSelectionPulseTick + 1) % SHIFT_SELECTION_PULSE_CYCLE;
@@ -1769,6 +1791,9 @@ public class GameBoard {
 
     public void toggleSelfPlay() {
         selfPlayActive = !selfPlayActive;
+        if (!selfPlayActive) {
+            turboActive = false;
+        }
         if (selfPlayActive) {
             selfPlayQueue = null;
             selfPlayDelayCounter = SELF_PLAY_MOVE_DELAY;
@@ -1785,11 +1810,165 @@ public class GameBoard {
 
     public boolean isSelfPlayActive() { return selfPlayActive; }
 
+    /**
+     * Stops the self-play and turbo worker threads; they start again when needed.
+     * Waits for the turbo worker's last turn, so the engine is free once this returns.
+     */
+    public void release() {
+        SelfPlayWorker worker = selfPlayWorker;
+        selfPlayWorker = null;
+        selfPlayResult = null;
+        if (worker != null) {
+            worker.close();
+        }
+        TurboWorker turbo = turboWorker;
+        turboWorker = null;
+        if (turbo != null) {
+            turbo.close();
+            try {
+                if (!turbo.awaitTermination(TURBO_STOP_TIMEOUT_MS)) {
+                    Log.w(TAG, "turbo worker still running after release");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (turboRunning) {
+            turboRunning = false;
+            turboFrame = null;
+            syncAfterTurbo();
+        }
+    }
+
+    /** The replay of the last finished game without cheats; it need not exist yet. */
+    public File getLastReplayFile() {
+        return new File(new File(context.getFilesDir(), REPLAY_DIR), LAST_REPLAY_FILE);
+    }
+
+    /** Whether (x, y) is on the SCORE card of the status bar. */
+    public boolean isScoreCardAt(int x, int y) {
+        return statusScoreRect != null && statusScoreRect.contains(x, y);
+    }
+
+    private void finishGame() {
+        updateHighscores(engine.getScore());
+        saveReplay();
+        status = statusT.GAME_OVER;
+    }
+
+    /** Writes the finished game's replay off the game loop thread, unless a cheat made it invalid. */
+    private void saveReplay() {
+        if (!replayRecorder.isValid()) {
+            return;
+        }
+        byte[] data = replayRecorder.toByteArray();
+        File target = getLastReplayFile();
+        Thread saver = new Thread(() -> {
+            try {
+                Replay.save(data, target);
+            } catch (IOException e) {
+                Log.e(TAG, "saving replay failed", e);
+            }
+        }, "ReplaySaver");
+        saver.setDaemon(true);
+        saver.start();
+    }
+
+    /** Switches turbo self-play on or off; turning it on starts self-play if needed. */
+    public void toggleTurbo() {
+        turboActive = !turboActive;
+        if (turboActive && !selfPlayActive) {
+            toggleSelfPlay();
+        }
+        alertAnimationCounter = ALERT_TIME / 2;
+    }
+
+    /**
+     * Hands the engine to the turbo worker, which plays the bot's moves straight
+     * through it, merges, chains and drop-ins included, and restarts finished
+     * games at once. Until tickTurbo takes it back only published frames are drawn.
+     */
+    private void startTurbo() {
+        if (turboWorker == null) {
+            SelfPlayBot.Context ctx = new SelfPlayBot.Context(width, height);
+            ctx.setRandom(new GameRandom(engine.getSeed()));
+            turboWorker = new TurboWorker(engine, ctx, gameSeeds);
+        }
+        selfPlayQueue = null;
+        selfPlayResult = null;
+        clearBonusSelection();
+        gameOverAnimationPhase = 0;
+        status = statusT.SELECT_START_POSITION;
+        turboWorker.poll(); // drop the frame published on the last pause
+        turboFrame = new TurboWorker.Frame(engine, engine.getScore(), 0);
+        turboRunning = turboWorker.resume();
+        if (!turboRunning) {
+            turboFrame = null;
+        }
+    }
+
+    /**
+     * Shows the latest turbo frame and takes the engine back from the worker
+     * once turbo is switched off or UI input waits for it.
+     *
+     * @return true while the worker still owns the engine
+     */
+    private boolean tickTurbo() {
+        if (!turboRunning) {
+            return false;
+        }
+        TurboWorker.Frame frame = turboWorker.poll();
+        if (frame != null) {
+            turboFrame = frame;
+            updateHighscores(frame.bestScore);
+            updateBonusValues(frame.bonusCounts);
+        }
+        if (turboActive && uiActions.isEmpty()) {
+            return true;
+        }
+        turboWorker.pause();
+        if (!turboWorker.isPaused()) {
+            return true;
+        }
+        turboRunning = false;
+        turboFrame = null;
+        syncAfterTurbo();
+        return false;
+    }
+
+    /** Brings the texts drawn from the engine up to date after the turbo worker played on it. */
+    private void syncAfterTurbo() {
+        updateHighscores(engine.getScore());
+        updateBonusValues();
+        levelText = "Level: " + engine.getLevel();
+        levelHintText = getNextLevelHintText();
+    }
+
+    /** Runs the input queued by the UI thread, on the game loop thread. */
+    private void runUiActions() {
+        Runnable action;
+        while ((action = uiActions.poll()) != null) {
+            action.run();
+        }
+    }
+
+    private int getShownCell(int x, int y) {
+        return (turboFrame != null) ? turboFrame.board[x][y] : gameBoardArray.get(x, y);
+    }
+
+    private long getShownScore() {
+        return (turboFrame != null) ? turboFrame.score : engine.getScore();
+    }
+
+    private int getShownLevel() {
+        return (turboFrame != null) ? turboFrame.level : engine.getLevel();
+    }
+
     private void tickSelfPlay() {
         // Auto-restart after game over
         if (status == statusT.GAME_OVER) {
             if (--selfPlayDelayCounter <= 0) {
-                onTouchEvent(MotionEvent.ACTION_DOWN, canvasWidth / 2, canvasHeight / 4);
+                handleTouch(MotionEvent.ACTION_DOWN, canvasWidth / 2, canvasHeight / 4);
                 // gameInit() already resets selfPlayDelayCounter to SELF_PLAY_MOVE_DELAY
             }
             return;
@@ -1801,7 +1980,7 @@ public class GameBoard {
                 int[] step = selfPlayQueue[selfPlayQueueIdx];
                 int px = step[0], py = step[1], action = step[2], nextDelay = step[3];
                 triggerSelfPlayTapAnim(px, py);
-                onTouchEvent(action, px, py);
+                handleTouch(action, px, py);
                 selfPlayQueueIdx++;
                 if (selfPlayQueueIdx >= selfPlayQueue.length) {
                     selfPlayQueue = null;
@@ -1813,21 +1992,37 @@ public class GameBoard {
             return;
         }
 
-        // Compute next decision when idle
+        // Compute next decision when idle. The worker thinks during the move delay;
+        // the loop only polls and never waits for it.
         if (status == statusT.SELECT_START_POSITION) {
-            if (--selfPlayDelayCounter <= 0) {
-                int[] bonusCounts = getBonusCounts();
-                int freeCells = gameBoardArray.getNumFreeCells();
-                SelfPlayBot.BotDecision dec = SelfPlayBot.computeDecision(
-                        getBoardSnapshot(), width, height, bonusCounts, freeCells);
-                if (dec != null) {
-                    selfPlayQueue = buildActionQueue(dec);
-                    selfPlayQueueIdx = 0;
-                    selfPlayDelayCounter = 0;
-                } else {
-                    selfPlayDelayCounter = SELF_PLAY_MOVE_DELAY;
+            SelfPlayWorker worker = selfPlayWorker;
+            if (worker == null) {
+                SelfPlayBot.Context ctx = new SelfPlayBot.Context(width, height);
+                ctx.setSearchBudgetNanos(SELF_PLAY_SEARCH_BUDGET_NANOS);
+                ctx.setRandom(new GameRandom(engine.getSeed()));
+                worker = new SelfPlayWorker(ctx);
+                selfPlayWorker = worker;
+            }
+            long version = SelfPlayWorker.stateVersion(gameBoardArray, engine.getLevel(), engine.getScore(),
+                    getBonusCounts());
+            if (selfPlayResult == null || selfPlayResult.version != version) {
+                selfPlayResult = worker.poll(version);
+                if (selfPlayResult == null && !worker.isBusy()) {
+                    worker.submit(new SelfPlayWorker.Snapshot(gameBoardArray, engine.getLevel(), engine.getScore(), getBonusCounts()));
                 }
             }
+            if (selfPlayDelayCounter > 0) selfPlayDelayCounter--;
+            if (selfPlayDelayCounter > 0 || selfPlayResult == null) return;
+
+            SelfPlayBot.BotDecision dec = selfPlayResult.decision;
+            selfPlayResult = null;
+            if (dec != null) {
+                selfPlayQueue = buildActionQueue(dec);
+                selfPlayQueueIdx = 0;
+                selfPlayDelayCounter = 0;
+            } else {
+                selfPlayDelayCounter = SELF_PLAY_MOVE_DELAY;
+            }
         }
     }
 
@@ -1887,10 +2082,7 @@ public class GameBoard {
     }
 
     private int[] getBonusCounts() {
-        return new int[]{
-            undoCounter, dissolveCounter, swapCounter, bombCounter,
-            shiftLineCounter, jumpCounter, delLineCounter, colorClearCounter
-        };
+        return engine.getBonusCounts();
     }
 
     private Rect getSlotRectByIndex(int idx) {
@@ -1916,20 +2108,16 @@ public class GameBoard {
     private int gridToPixelX(int gx) { return (int) (gx * cellWidth  + cellWidth  / 2f); }
     private int gridToPixelY(int gy) { return (int) (gy * cellHeight + cellHeight / 2f); }
 
-    private int[][] getBoardSnapshot() {
-        int[][] snap = new int[width][height];
-        for (int y = 0; y < height; y++)
-            for (int x = 0; x < width; x++)
-                snap[x][y] = gameBoardArray.get(x, y);
-        return snap;
-    }
-
     private void handleNewCellDropIns() {
-        if (dropInCount > 0 && !dropInAnimationRunning) {
+        if (engine.getPendingDropIns() > 0 && !dropInAnimationRunning) {
 
-            Coord c = gameBoardArray.randomlyAddCell(getCurrentMinSpawnIndex(), getCurrentMaxSpawnIndex());
+            Coord c = engine.dropIn();
+            if (c == null) {
+                // board is full, nothing left to drop in
+                finishGame();
+                return;
+            }
 
-            dropInCount--;
             targetPositionX = c.x;
             targetPositionY = c.y;
 
@@ -1946,9 +2134,7 @@ public class GameBoard {
 
     private void handleCellMerging() {
         if (mergeAnimationStep == 0) {
-            gameBoardArrayValueAfterMotion = gameBoardArray.get(targetPositionX, targetPositionY);
-            mergeGroup = merge(targetPositionX, targetPositionY);
-            if (mergeGroup.size() >= MIN_COMBO_SIZE) {
+            if (gameBoardArray.getMergeGroupSize(targetPositionX, targetPositionY) >= MIN_COMBO_SIZE) {
                 startMergeAnimation();
             } else {
                 if (swapSelected) {
@@ -1967,8 +2153,8 @@ public class GameBoard {
             }
             int freeCells = gameBoardArray.getNumFreeCells();
             if (freeCells == 0 && !(boardWideMergeScanActive && status == statusT.MERGE)) {
-                finalizeChainScoreIfNeeded();
-                status = statusT.GAME_OVER;
+                engine.endGame();
+                finishGame();
             }
         } else {
             mergeAnimationStep--;
@@ -2001,13 +2187,13 @@ public class GameBoard {
 
             } else {
                 if (swapSelected) {
-                    swapCounter--;
+                    engine.spendBonus(SelfPlayBot.IDX_SWAP);
                     updateBonusValues();
                     gameBoardArray.set(xAfterSwapMotion, yAfterSwapMotion, swapPartnerValueAfterMotion);
                     paintArray[xAfterSwapMotion][yAfterSwapMotion].setColor(swapMotionPaint.getColor());
-                    dropInCount = 0;
+                    engine.setPendingDropIns(0);
                 } else {
-                    dropInCount = DROP_INS_AFTER_MOTION;
+                    engine.setPendingDropIns(DROP_INS_AFTER_MOTION);
                 }
                 status = statusT.MERGE;
                 startMotion = true;
@@ -2065,9 +2251,9 @@ public class GameBoard {
         if (reachedJumpTargetPosition()) {
             status = statusT.MERGE;
             startMotion = true;
-            dropInCount = 0;
+            engine.setPendingDropIns(0);
             jumpSelected = false;
-            jumpCounter--;
+            engine.spendBonus(SelfPlayBot.IDX_JUMP);
             gameBoardArray.set(xAfterMotion, yAfterMotion, gameBoardArrayValueAfterMotion);
             paintArray[xAfterMotion][yAfterMotion].setColor(motionPaint.getColor());
             updateBonusValues();
@@ -2205,7 +2391,6 @@ public class GameBoard {
                 if (coord == null) {
                     continue;
                 }
-                gameBoardArray.set(coord.x, coord.y, -1);
                 paintArray[coord.x][coord.y].setColor(getColor(coord.x, coord.y));
             }
         }
@@ -2231,7 +2416,7 @@ public class GameBoard {
         lineDissolvePaints = null;
         lineDissolveTexts = null;
 
-        delLineCounter--;
+        engine.spendBonus(SelfPlayBot.IDX_DEL_LINE);
         delLineSelected = false;
         clearLineSelection();
 
@@ -2244,18 +2429,16 @@ public class GameBoard {
         java.util.ArrayList<Paint> paints = new java.util.ArrayList<>();
         java.util.ArrayList<String> texts = new java.util.ArrayList<>();
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (gameBoardArray.get(x, y) == targetValue) {
-                    rects.add(new Rect(rectArray[x][y]));
-                    Paint p = new Paint();
-                    p.setColor(paintArray[x][y].getColor());
-                    paints.add(p);
-                    texts.add(getText(x, y));
-                    gameBoardArray.set(x, y, -1);
-                    paintArray[x][y].setColor(getColor(x, y));
-                }
-            }
+        for (Coord c : gameBoardArray.findCellsWithValue(targetValue)) {
+            int x = c.x;
+            int y = c.y;
+            rects.add(new Rect(rectArray[x][y]));
+            Paint p = new Paint();
+            p.setColor(paintArray[x][y].getColor());
+            paints.add(p);
+            texts.add(getText(x, y));
+            gameBoardArray.set(x, y, -1);
+            paintArray[x][y].setColor(getColor(x, y));
         }
 
         colorClearRects = rects.toArray(new Rect[0]);
@@ -2277,7 +2460,7 @@ public class GameBoard {
         colorClearRects = null;
         colorClearPaints = null;
         colorClearTexts = null;
-        colorClearCounter--;
+        engine.spendBonus(SelfPlayBot.IDX_COLOR_CLEAR);
         colorClearSelected = false;
         continueAfterBonusBoardMutation();
         updateBonusValues();
@@ -2368,7 +2551,7 @@ public class GameBoard {
 
         bombAnimationRunning  = true;
         bombAnimationCounter  = BOMB_ANIMATION_STEPS;
-        bombCounter--;
+        engine.spendBonus(SelfPlayBot.IDX_BOMB);
         bombSelected = false;
     }
 
@@ -2529,7 +2712,7 @@ public class GameBoard {
             }
         }
 
-        shiftLineCounter--;
+        engine.spendBonus(SelfPlayBot.IDX_SHIFT_LINE);
         shiftLineSelected = false;
 
         shiftBonusValues = null;
@@ -2545,7 +2728,7 @@ public class GameBoard {
         dissolveAnimationRunning = false;
         gameBoardArray.set(dissolveTargetX, dissolveTargetY, -1);
         paintArray[dissolveTargetX][dissolveTargetY].setColor(getColor(dissolveTargetX, dissolveTargetY));
-        dissolveCounter--;
+        engine.spendBonus(SelfPlayBot.IDX_DISSOLVE);
         dissolveSelected = false;
         continueAfterBonusBoardMutation();
         updateBonusValues();
@@ -2574,8 +2757,10 @@ public class GameBoard {
                     grantLevelUpTestPoints();
                 } else if (i == 2) {
                     resetHighscore();
-                } else {
+                } else if (i == 3) {
                     toggleSelfPlay();
+                } else {
+                    toggleTurbo();
                 }
                 return true;
             }
@@ -2617,18 +2802,21 @@ public class GameBoard {
     }
 
     private void grantAllBonusesForTesting() {
+        replayRecorder.invalidate();
         for (int i = 0; i < BONUS_BUY_COSTS.length; i++) {
-            addBonusCount(i, 1);
+            engine.addBonus(i, 1);
         }
+        updateBonusValues();
         lockHighscoreByCheatIfNeeded();
         // Subtle feedback that the hidden code was accepted.
         alertAnimationCounter = ALERT_TIME / 2;
     }
 
     private void grantLevelUpTestPoints() {
-        score = safeAdd(score, SECRET_CODE_SCORE_BOOST_AMOUNT);
         lockHighscoreByCheatIfNeeded();
-        applyProgressionAfterScoreChange();
+        replayRecorder.invalidate();
+        engine.addScore(SECRET_CODE_SCORE_BOOST_AMOUNT);
+        updateHighscores(engine.getScore());
         // Reuse alert pulse as subtle confirmation for hidden test command.
         alertAnimationCounter = ALERT_TIME / 2;
     }
@@ -2690,18 +2878,18 @@ public class GameBoard {
     private void startMergeAnimation() {
         int targetX = rectArray[targetPositionX][targetPositionY].left;
         int targetY = rectArray[targetPositionX][targetPositionY].top;
+        mergeText = getText(targetPositionX, targetPositionY);
+        if (mergePaint == null) mergePaint = new Paint();
+        mergePaint.setColor(getColor(targetPositionX, targetPositionY));
+        mergeGroup = engine.merge(targetPositionX, targetPositionY);
         numMergeRects = mergeGroup.size();
         Iterator<Coord> it = mergeGroup.iterator();
         mergeRects = new Rect[numMergeRects];
         mergeIncrementsX = new float[numMergeRects];
         mergeIncrementsY = new float[numMergeRects];
-        mergeText = getText(targetPositionX, targetPositionY);
-        if (mergePaint == null) mergePaint = new Paint();
-        mergePaint.setColor(getColor(targetPositionX, targetPositionY));
         int i = 0;
         while (it.hasNext()) {
             Coord c = it.next();
-            gameBoardArray.set(c.x, c.y, -1);
             mergeRects[i] = new Rect(rectArray[c.x][c.y]);
             mergeIncrementsX[i] = ((float) (targetX - mergeRects[i].left)) / ((float) MERGE_ANIMATION_TIME);
             mergeIncrementsY[i] = ((float) (targetY - mergeRects[i].top))  / ((float) MERGE_ANIMATION_TIME);
@@ -2709,37 +2897,11 @@ public class GameBoard {
         }
 
         mergeAnimationStep = MERGE_ANIMATION_TIME;
-        gameBoardArray.set(targetPositionX, targetPositionY, gameBoardArrayValueAfterMotion + 2);
-    }
-
-     private void finishMergeAnimation() {
-         if (dropInCount == DROP_INS_AFTER_MOTION) {
-             dropInCount = 0;
-         }
-
-         long comboScore = calculateComboScore(mergeGroup.size());
-         if (gameBoardArrayValueAfterMotion > getCurrentMaxSpawnIndex()) {
-             comboScore = safeMultiply(comboScore, 4L);
-         }
-         if (chainLength == 0) {
-             chainScoreProduct = comboScore;
-         } else {
-             chainScoreProduct = safeMultiply(chainScoreProduct, comboScore);
-         }
-         chainLength++;
-
-         long liveScore = safeAdd(score, chainScoreProduct);
-         if (!highscoreLockedByCheat && liveScore > highScore) {
-             highScore = liveScore;
-             highscoreExceeded = true;
-             prefs.edit().putLong(PREF_KEY_HIGHSCORE, highScore).apply();
-         }
-         if (selfPlayActive && liveScore > autoHighScore) {
-             autoHighScore = liveScore;
-             autoHighscoreExceeded = true;
-             prefs.edit().putLong(PREF_KEY_AUTO_HIGHSCORE, autoHighScore).apply();
-         }
-     }
+    }
+
+    private void finishMergeAnimation() {
+        updateHighscores(engine.getLiveScore());
+    }
 
     private void startBonusAnimation() {
         animateBonusCounter = BONUS_ANIMATION_DURATION;
@@ -2783,14 +2945,14 @@ public class GameBoard {
 
     private void startLevelAnimation() {
         levelAnimationCounter = LEVEL_ANIMATION_DURATION;
-        levelText = "Level: " + level;
+        levelText = "Level: " + engine.getLevel();
         levelHintText = getNextLevelHintText();
     }
 
     private String getNextLevelHintText() {
-        int nextLevel = level + 1;
-        long targetScore = getLevelThreshold(nextLevel);
-        long remainingScore = Math.max(0L, targetScore - score);
+        int nextLevel = engine.getLevel() + 1;
+        long targetScore = GameRules.getLevelThreshold(nextLevel);
+        long remainingScore = Math.max(0L, targetScore - engine.getScore());
         return "Next L" + nextLevel + " at " + getScoreText(targetScore) + " (" + getScoreText(remainingScore) + " left)";
     }
 
@@ -2806,40 +2968,12 @@ public class GameBoard {
         ensureBoardCanRefillIfEmpty();
     }
 
-    private int getCurrentMinSpawnIndex() {
-        return LevelProgression.getMinSpawnIndex(level);
-    }
-
-    private int getCurrentMaxSpawnIndex() {
-        return LevelProgression.getMaxSpawnIndex(level);
-    }
-
-    private void applyCurrentLevelProgression() {
-        int minSpawnIndex = getCurrentMinSpawnIndex();
-        List<Coord> cellsToRemove = new ArrayList<>();
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int value = gameBoardArray.get(x, y);
-                if (value != -1 && value < minSpawnIndex) {
-                    cellsToRemove.add(new Coord(x, y));
-                }
-            }
-        }
-
-        if (cellsToRemove.isEmpty()) {
-            ensureBoardCanRefillIfEmpty();
-            return;
-        }
-
-        startLevelPruneAnimation(cellsToRemove);
-    }
-
     private void ensureBoardCanRefillIfEmpty() {
         if (gameBoardArray.getNumFreeCells() != width * height) {
             return;
         }
 
-        dropInCount = Math.max(dropInCount, DROP_INS_AFTER_MOTION);
+        engine.setPendingDropIns(Math.max(engine.getPendingDropIns(), DROP_INS_AFTER_MOTION));
         if (status == statusT.SELECT_TARGET_POSITION) {
             resetCell(startPositionX, startPositionY);
             status = statusT.SELECT_START_POSITION;
@@ -2851,172 +2985,38 @@ public class GameBoard {
 
 
     private void updateBonusValues() {
-        undoText   = Integer.toString(undoCounter);
-        swapText   = Integer.toString(swapCounter);
-        jumpText   = Integer.toString(jumpCounter);
-        dissolveText = Integer.toString(dissolveCounter);
-        delLineText  = Integer.toString(delLineCounter);
-        shiftLineText = Integer.toString(shiftLineCounter);
-        colorClearText = Integer.toString(colorClearCounter);
-        bombText     = Integer.toString(bombCounter);
-    }
-
-    private long calculateComboScore(int comboSize) {
-        if (comboSize < MIN_COMBO_SIZE) {
-            return 0L;
-        }
-        int shift = comboSize - MIN_COMBO_SIZE;
-        if (shift >= 60) {
-            return Long.MAX_VALUE;
-        }
-        return BASE_COMBO_SCORE << shift;
-    }
-
-    private long safeAdd(long a, long b) {
-        if (a > Long.MAX_VALUE - b) {
-            return Long.MAX_VALUE;
-        }
-        return a + b;
-    }
-
-    private long safeMultiply(long a, long b) {
-        if (a == 0L || b == 0L) {
-            return 0L;
-        }
-        if (a > Long.MAX_VALUE / b) {
-            return Long.MAX_VALUE;
-        }
-        return a * b;
+        updateBonusValues(engine.getBonusCounts());
     }
 
-    private long getLevelThreshold(int nextLevel) {
-        return BASE_LEVEL_SCORE * nextLevel * (long) nextLevel;
+    /** @param counts bonus counts in SelfPlayBot.IDX_* order */
+    private void updateBonusValues(int[] counts) {
+        undoText   = Integer.toString(counts[SelfPlayBot.IDX_UNDO]);
+        swapText   = Integer.toString(counts[SelfPlayBot.IDX_SWAP]);
+        jumpText   = Integer.toString(counts[SelfPlayBot.IDX_JUMP]);
+        dissolveText = Integer.toString(counts[SelfPlayBot.IDX_DISSOLVE]);
+        delLineText  = Integer.toString(counts[SelfPlayBot.IDX_DEL_LINE]);
+        shiftLineText = Integer.toString(counts[SelfPlayBot.IDX_SHIFT_LINE]);
+        colorClearText = Integer.toString(counts[SelfPlayBot.IDX_COLOR_CLEAR]);
+        bombText     = Integer.toString(counts[SelfPlayBot.IDX_BOMB]);
     }
 
-    private long getBonusStepForLevel(int currentLevel) {
-        return BASE_BONUS_STEP + BONUS_STEP_PER_LEVEL * Math.max(0, currentLevel - 1);
-    }
-
-    private int getWeightedRandomBonusIndex() {
-        double totalWeight = 0.0d;
-        for (int i = 0; i < BONUS_BUY_COSTS.length; i++) {
-            totalWeight += getBonusWeight(i);
-        }
-
-        double roll = rand.nextDouble() * totalWeight;
-        double cumulativeWeight = 0.0d;
-        for (int i = 0; i < BONUS_BUY_COSTS.length; i++) {
-            cumulativeWeight += getBonusWeight(i);
-            if (roll <= cumulativeWeight) {
-                return i;
-            }
-        }
-        return BONUS_BUY_COSTS.length - 1;
-    }
-
-    private double getBonusWeight(int index) {
-        int count = getBonusCount(index);
-        return 1.0d / ((double) BONUS_BUY_COSTS[index] * (1.0d + BONUS_COUNT_DAMPING * count));
-    }
-
-    private int getBonusCount(int index) {
-        switch (index) {
-            case 0: return undoCounter;
-            case 1: return dissolveCounter;
-            case 2: return swapCounter;
-            case 3: return bombCounter;
-            case 4: return shiftLineCounter;
-            case 5: return jumpCounter;
-            case 6: return delLineCounter;
-            case 7: return colorClearCounter;
-            default: return 0;
-        }
-    }
-
-    private void addBonusCount(int bonusIndex, int amount) {
-        switch (bonusIndex) {
-            case 0:
-                undoCounter += amount;
-                break;
-            case 1:
-                dissolveCounter += amount;
-                break;
-            case 2:
-                swapCounter += amount;
-                break;
-            case 3:
-                bombCounter += amount;
-                break;
-            case 4:
-                shiftLineCounter += amount;
-                break;
-            case 5:
-                jumpCounter += amount;
-                break;
-            case 6:
-                delLineCounter += amount;
-                break;
-            case 7:
-                colorClearCounter += amount;
-                break;
-            default:
-                break;
-        }
-    }
-
-    private void awardRandomBonus() {
-        bonusWin = getWeightedRandomBonusIndex();
-        addBonusCount(bonusWin, BONUS_AWARD_AMOUNT);
-        // Draw second bonus after updating the count so the damping
-        // naturally reduces the chance of receiving the same one again.
-        bonusWin2 = getWeightedRandomBonusIndex();
-        addBonusCount(bonusWin2, BONUS_AWARD_AMOUNT);
-        bonusWin3 = getWeightedRandomBonusIndex();
-        addBonusCount(bonusWin3, BONUS_AWARD_AMOUNT);
-        startBonusAnimation();
-    }
-
-    private void applyProgressionAfterScoreChange() {
-        boolean leveledUp = false;
-        while (score >= getLevelThreshold(level + 1)) {
-            level++;
-            leveledUp = true;
-        }
-        if (leveledUp) {
-            applyCurrentLevelProgression();
-            startLevelAnimation();
-        }
-
-        if (!highscoreLockedByCheat && score > highScore) {
-            highScore = score;
+    /** Keeps the stored highscores up to date with the given (live) score. */
+    private void updateHighscores(long currentScore) {
+        if (!highscoreLockedByCheat && currentScore > highScore) {
+            highScore = currentScore;
             highscoreExceeded = true;
             prefs.edit().putLong(PREF_KEY_HIGHSCORE, highScore).apply();
         }
-        if (selfPlayActive && score > autoHighScore) {
-            autoHighScore = score;
+        if (selfPlayActive && currentScore > autoHighScore) {
+            autoHighScore = currentScore;
             autoHighscoreExceeded = true;
             prefs.edit().putLong(PREF_KEY_AUTO_HIGHSCORE, autoHighScore).apply();
         }
-
-        while (score >= nextScoreForBonus) {
-            awardRandomBonus();
-            nextScoreForBonus = safeAdd(nextScoreForBonus, getBonusStepForLevel(level));
-        }
     }
 
     private void finalizeChainScoreIfNeeded() {
-        if (chainLength == 0) {
-            return;
-        }
-
-        score = safeAdd(score, chainScoreProduct);
-        chainScoreProduct = 0L;
-        chainLength = 0;
-        applyProgressionAfterScoreChange();
-    }
-
-    private Set<Coord> merge(int x, int y) {
-        return gameBoardArray.findMergeGroup(x, y);
+        engine.finalizeChainScore();
+        updateHighscores(engine.getScore());
     }
 
     private boolean reachedPathPosition() {
@@ -3081,7 +3081,15 @@ public class GameBoard {
         onTouchEvent(MotionEvent.ACTION_DOWN, x, y);
     }
 
+    /**
+     * Queues a touch for the next update, so input from the UI thread runs on
+     * the game loop thread and never while the turbo worker owns the engine.
+     */
     public void onTouchEvent(int action, int x, int y) {
+        uiActions.add(() -> handleTouch(action, x, y));
+    }
+
+    private void handleTouch(int action, int x, int y) {
 
         if (action == MotionEvent.ACTION_DOWN) {
             touchDownX = x;
@@ -3149,6 +3157,8 @@ public class GameBoard {
                     targetPositionX = indexX;
                     targetPositionY = indexY;
                     if (jumpSelected) {
+                        engine.recordAction(GameAction.jump(startPositionY * width + startPositionX,
+                                targetPositionY * width + targetPositionX));
                         resetCell(startPositionX, startPositionY);
                         applyCommonMotionSettings(startPositionX, startPositionY, targetPositionX, targetPositionY);
                         status = statusT.MOTION;
@@ -3173,6 +3183,9 @@ public class GameBoard {
                             }
                         }
                         if (!motionPath.isEmpty()) {
+                            int src = startPositionY * width + startPositionX;
+                            int dst = targetPositionY * width + targetPositionX;
+                            engine.recordAction(swapSelected ? GameAction.swap(src, dst) : GameAction.normal(src, dst));
                             resetCell(startPositionX, startPositionY);
                             status = statusT.MOTION;
                         } else {
@@ -3215,8 +3228,10 @@ public class GameBoard {
 
         if (delLineSelected) {
             if (horizDominant) {
+                engine.recordAction(GameAction.delLine(lineSelectionRow, true));
                 startLineDissolveAnimation(true, lineSelectionRow);
             } else {
+                engine.recordAction(GameAction.delLine(lineSelectionCol, false));
                 startLineDissolveAnimation(false, lineSelectionCol);
             }
             return true;
@@ -3225,9 +3240,11 @@ public class GameBoard {
         if (shiftLineSelected) {
             if (horizDominant) {
                 int directionSign = deltaX > 0 ? 1 : -1;
+                engine.recordAction(GameAction.shiftLine(lineSelectionRow, true, directionSign > 0));
                 startShiftBonusAnimation(true, lineSelectionRow, directionSign);
             } else {
                 int directionSign = deltaY > 0 ? 1 : -1;
+                engine.recordAction(GameAction.shiftLine(lineSelectionCol, false, directionSign > 0));
                 startShiftBonusAnimation(false, lineSelectionCol, directionSign);
             }
             return true;
@@ -3239,6 +3256,7 @@ public class GameBoard {
     private boolean handleBoardBonusTap(int indexX, int indexY, int cellValue) {
         if (dissolveSelected) {
             if (cellValue != -1) {
+                engine.recordAction(GameAction.dissolve(indexY * width + indexX));
                 startDissolveAnimation(indexX, indexY);
             } else {
                 alertAnimationCounter = ALERT_TIME;
@@ -3258,6 +3276,7 @@ public class GameBoard {
 
         if (colorClearSelected) {
             if (cellValue != -1) {
+                engine.recordAction(GameAction.colorClear(indexY * width + indexX));
                 startColorClearAnimation(cellValue);
             } else {
                 alertAnimationCounter = ALERT_TIME;
@@ -3266,6 +3285,7 @@ public class GameBoard {
         }
 
         if (bombSelected) {
+            engine.recordAction(GameAction.bomb(indexY * width + indexX));
             startBombAnimation(indexX, indexY);
             return true;
         }
@@ -3288,9 +3308,8 @@ public class GameBoard {
     }
 
     private void startDropInsIfBoardEmpty() {
-        if (gameBoardArray.getNumFreeCells() == width * height) {
+        if (engine.refillIfEmpty()) {
             status = statusT.DROP_IN_NEW_CELLS;
-            dropInCount = DROP_INS_AFTER_MOTION;
         } else {
             status = statusT.SELECT_START_POSITION;
         }
@@ -3305,21 +3324,14 @@ public class GameBoard {
     }
 
     private boolean startBoardWideMergeIfAvailable() {
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (gameBoardArray.get(x, y) == -1) {
-                    continue;
-                }
-                Set<Coord> group = merge(x, y);
-                if (group.size() >= MIN_COMBO_SIZE) {
-                    targetPositionX = x;
-                    targetPositionY = y;
-                    status = statusT.MERGE;
-                    return true;
-                }
-            }
+        Coord candidate = gameBoardArray.findMergeCandidate();
+        if (candidate == null) {
+            return false;
         }
-        return false;
+        targetPositionX = candidate.x;
+        targetPositionY = candidate.y;
+        status = statusT.MERGE;
+        return true;
     }
 
     private boolean handleBonusBarTap(int x, int y) {
@@ -3327,105 +3339,63 @@ public class GameBoard {
             return false;
         }
 
-        if (undoBuyRect.contains(x, y)) {
-            if (tryBuyBonus(undoBuyRect, x, y, BUY_COST_UNDO)) {
-                undoCounter++;
-            }
-            return true;
-        }
-        if (swapBuyRect.contains(x, y)) {
-            if (tryBuyBonus(swapBuyRect, x, y, BUY_COST_SWAP)) {
-                swapCounter++;
-            }
-            return true;
-        }
-        if (jumpBuyRect.contains(x, y)) {
-            if (tryBuyBonus(jumpBuyRect, x, y, BUY_COST_JUMP)) {
-                jumpCounter++;
-            }
-            return true;
-        }
-        if (dissolveBuyRect.contains(x, y)) {
-            if (tryBuyBonus(dissolveBuyRect, x, y, BUY_COST_DISSOLVE)) {
-                dissolveCounter++;
-            }
-            return true;
-        }
-        if (delLineBuyRect.contains(x, y)) {
-            if (tryBuyBonus(delLineBuyRect, x, y, BUY_COST_DEL_LINE)) {
-                delLineCounter++;
-            }
-            return true;
-        }
-        if (shiftLineBuyRect.contains(x, y)) {
-            if (tryBuyBonus(shiftLineBuyRect, x, y, BUY_COST_SHIFT_LINE)) {
-                shiftLineCounter++;
-            }
-            return true;
-        }
-        if (colorClearBuyRect.contains(x, y)) {
-            if (tryBuyBonus(colorClearBuyRect, x, y, BUY_COST_COLOR_CLEAR)) {
-                colorClearCounter++;
-            }
-            return true;
-        }
-        if (bombBuyRect.contains(x, y)) {
-            if (tryBuyBonus(bombBuyRect, x, y, BUY_COST_BOMB)) {
-                bombCounter++;
-            }
+        int buyIndex = getBuyButtonIndexAt(x, y);
+        if (buyIndex >= 0) {
+            buyBonus(buyIndex);
             return true;
         }
 
-        if (undoSlotRect.contains(x, y) && undoCounter > 0) {
-            deselectAllBonuses();
+        if (undoSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_UNDO) > 0) {
+            clearBonusSelection();
+            engine.recordAction(GameAction.undo());
             gameBoardArray.unrollBackup();
-            undoCounter--;
+            engine.spendBonus(SelfPlayBot.IDX_UNDO);
             return true;
         }
-        if (swapSlotRect.contains(x, y) && swapCounter > 0) {
+        if (swapSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_SWAP) > 0) {
             boolean prev = swapSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             swapSelected = !prev;
             return true;
         }
-        if (jumpSlotRect.contains(x, y) && jumpCounter > 0) {
+        if (jumpSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_JUMP) > 0) {
             boolean prev = jumpSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             jumpSelected = !prev;
             return true;
         }
-        if (dissolveSlotRect.contains(x, y) && dissolveCounter > 0) {
+        if (dissolveSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_DISSOLVE) > 0) {
             leaveTargetSelectionMode();
             boolean prev = dissolveSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             dissolveSelected = !prev;
             return true;
         }
-        if (delLineSlotRect.contains(x, y) && delLineCounter > 0) {
+        if (delLineSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_DEL_LINE) > 0) {
             leaveTargetSelectionMode();
             boolean prev = delLineSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             delLineSelected = !prev;
             return true;
         }
-        if (shiftLineSlotRect.contains(x, y) && shiftLineCounter > 0) {
+        if (shiftLineSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_SHIFT_LINE) > 0) {
             leaveTargetSelectionMode();
             boolean prev = shiftLineSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             shiftLineSelected = !prev;
             return true;
         }
-        if (colorClearSlotRect.contains(x, y) && colorClearCounter > 0) {
+        if (colorClearSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_COLOR_CLEAR) > 0) {
             leaveTargetSelectionMode();
             boolean prev = colorClearSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             colorClearSelected = !prev;
             return true;
         }
-        if (bombSlotRect.contains(x, y) && bombCounter > 0) {
+        if (bombSlotRect.contains(x, y) && engine.getBonusCount(SelfPlayBot.IDX_BOMB) > 0) {
             leaveTargetSelectionMode();
             boolean prev = bombSelected;
-            deselectAllBonuses();
+            clearBonusSelection();
             bombSelected = !prev;
             return true;
         }
@@ -3433,18 +3403,6 @@ public class GameBoard {
         return false;
     }
 
-    private boolean tryBuyBonus(Rect buyRect, int x, int y, long buyCost) {
-        if (buyRect == null || !buyRect.contains(x, y)) {
-            return false;
-        }
-        if (score < buyCost) {
-            alertAnimationCounter = ALERT_TIME;
-            return false;
-        }
-        score -= buyCost;
-        return true;
-    }
-
     private void leaveTargetSelectionMode() {
         if (status == statusT.SELECT_TARGET_POSITION) {
             resetCell(startPositionX, startPositionY);
@@ -3452,8 +3410,12 @@ public class GameBoard {
         }
     }
 
-    /** Deselects all bonus actions at once. */
+    /** Deselects all bonus actions at once; queued like {@link #onTouchEvent(int, int, int)}. */
     public void deselectAllBonuses() {
+        uiActions.add(this::clearBonusSelection);
+    }
+
+    private void clearBonusSelection() {
         undoSelected   = false;
         swapSelected   = false;
         jumpSelected   = false;
@@ -3497,7 +3459,7 @@ public class GameBoard {
 
 
     public String getText(int x, int y) {
-        int val = gameBoardArray.get(x, y);
+        int val = getShownCell(x, y);
         if (val == -1) {
             return "";
         } else if (val < 10) {
@@ -3528,14 +3490,16 @@ public class GameBoard {
         return -1;
     }
 
-    public boolean performBuyForIndex(int index) {
-        long cost = getBonusCost(index);
-        if (score < cost) {
+    /** Buys one bonus of the given index; queued like {@link #onTouchEvent(int, int, int)}. */
+    public void performBuyForIndex(int index) {
+        uiActions.add(() -> buyBonus(index));
+    }
+
+    private boolean buyBonus(int index) {
+        if (index < 0 || index >= BONUS_BUY_COSTS.length || !engine.buyBonus(index)) {
             alertAnimationCounter = ALERT_TIME;
             return false;
         }
-        score -= cost;
-        addBonusCount(index, 1);
         updateBonusValues();
         return true;
     }
@@ -1,68 +1,228 @@
 package com.example.androidstudio2dgamedevelopment;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 public class GameBoardArray {
 
-    private static final int MAX_PATH_LEN = 0xffffff;
+    /** Compact path step codes; they match {@link GameBoard.directionT#ordinal()}. */
+    static final byte DIR_UP    = 0;
+    static final byte DIR_DOWN  = 1;
+    static final byte DIR_LEFT  = 2;
+    static final byte DIR_RIGHT = 3;
+    private static final GameBoard.directionT[] DIRECTIONS = GameBoard.directionT.values();
+
+    /** Value of an empty cell. */
+    private static final int EMPTY = -1;
+    /** Value of the sentinel frame around the board; never equal to a cell value. */
+    private static final int BORDER = -2;
 
     private final int width;
     private final int height;
 
-    private static final int MAX_UNDO_DEPTH = 10;
-
-    private final int[][] gameBoardContent;
-    private final int[][] searchBoard;
-    private final Deque<int[][]> undoStack = new ArrayDeque<>();
+    private static final int DEFAULT_UNDO_DEPTH = 10;
+    static final int UNLIMITED_UNDO_DEPTH = Integer.MAX_VALUE;
+    private static final int INITIAL_JOURNAL_CAPACITY = 64;
+    private static final int INITIAL_MOVE_CAPACITY = 16;
+    private static final int PATH_CACHE_SIZE = 64;
+
+    /** Smallest group of equal neighbouring values that merges. */
+    static final int MIN_COMBO_SIZE = 4;
+
+    // Row-major storage with a one-cell sentinel frame: cell (x, y) lives at
+    // (y + 1) * stride + (x + 1), so the four neighbours of any board cell are
+    // index - 1, index + 1, index - stride and index + stride without bounds checks.
+    private final int stride;
+    private final int[] gameBoardContent;
+
+    // BFS scratch space, reused by every path query. A cell is visited in the
+    // current search iff searchStamp[i] == currentSearchStamp, so nothing has to
+    // be cleared between queries. Every cell enters the queue at most once per
+    // search, so a queue of numCells entries never overflows.
+    private final int[] searchStamp;
+    private final int[] searchParent;
+    private final int[] searchQueue;
+    private final byte[] pathBuffer;
+    private int currentSearchStamp;
+
+    // Path cache: direct-mapped on (start, target, allowTargetPosCollision). An
+    // entry is valid only while pathCacheVersion matches boardVersion, which
+    // write() bumps on every change, so set() and undo invalidate it implicitly.
+    // Unreachable targets are cached too, as length -1.
+    private long boardVersion;
+    private final long[] pathCacheVersion  = new long[PATH_CACHE_SIZE];
+    private final int[] pathCacheStart     = new int[PATH_CACHE_SIZE];
+    private final int[] pathCacheTarget    = new int[PATH_CACHE_SIZE];
+    private final boolean[] pathCacheAllow = new boolean[PATH_CACHE_SIZE];
+    private final int[] pathCacheLength    = new int[PATH_CACHE_SIZE];
+    private final byte[][] pathCacheSteps  = new byte[PATH_CACHE_SIZE][];
+    private long pathCacheHits;
+    private long pathCacheMisses;
+
+    // Free-cell index: freeCells[0 .. numFreeCells) lists the flat indices of all
+    // empty cells in no particular order, freeSlot[i] is the position of cell i in
+    // that list or -1 if the cell is occupied. Kept up to date by write().
+    // freeRanks is a Fenwick tree over the row-major cell numbers y * width + x
+    // counting empty cells, so the n-th empty cell in board order is found in
+    // O(log cells) whatever order the cells were written in.
+    private final int[] freeCells;
+    private final int[] freeSlot;
+    private int numFreeCells;
+    private final int[] freeRanks;
+    private final int freeRanksTopBit;
+
+    // Connected regions of empty cells: regionLabel[i] numbers the region of empty
+    // cell i from 1, occupied and border cells are 0. Any change between empty and
+    // occupied may join or split regions, so the labels are rebuilt on the next query.
+    private final int[] regionLabel;
+    private int numEmptyRegions;
+    private boolean regionsDirty;
+
+    // Merge groups as a disjoint-set forest over occupied cells: groupParent links
+    // towards the root, groupSize is valid at roots (0 for empty cells) and
+    // groupNext chains the members of each group into a ring and groupMin, valid at
+    // roots, is the group's smallest member index. Roots of groups with at least
+    // MIN_COMBO_SIZE members are listed in mergeableRoots / mergeableSlot.
+    // Filling a cell unions it in place; emptying or changing a cell of a larger
+    // group may split it, so the forest is then rebuilt on the next query.
+    private final int[] groupParent;
+    private final int[] groupSize;
+    private final int[] groupNext;
+    private final int[] groupMin;
+    private final int[] mergeableRoots;
+    private final int[] mergeableSlot;
+    private int numMergeableRoots;
+    private boolean groupsDirty;
+
+    // Undo journal: one (cell, old value) record per changed cell, in
+    // ring buffers addressed by ever-increasing sequence numbers masked with the
+    // power-of-two capacity. moveStarts holds the first record of each undoable
+    // move; records written after the newest move started belong to that move.
+    private int[] journalCell = new int[INITIAL_JOURNAL_CAPACITY];
+    private int[] journalOld  = new int[INITIAL_JOURNAL_CAPACITY];
+    private int journalHead;
+    private int journalTail;
+    private int[] moveStarts = new int[INITIAL_MOVE_CAPACITY];
+    private int moveHead;
+    private int moveTail;
+    private int undoDepth = DEFAULT_UNDO_DEPTH;
+
+    // Zobrist hash of the board: XOR of zobristKey(cell, value) over all occupied
+    // cells, updated by write() so undo and bulk operations keep it exact.
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+    private long zobristHash;
+
+    // Per-value position index: valueCells[v][0 .. valueCount[v]) lists the cells
+    // holding value v, valueSlot[i] is the position of cell i in its value's list.
+    // Both outer arrays grow on demand as higher values appear.
+    private static final int INITIAL_VALUE_CAPACITY = 16;
+    private int[][] valueCells = new int[INITIAL_VALUE_CAPACITY][];
+    private int[] valueCount = new int[INITIAL_VALUE_CAPACITY];
+    private final int[] valueSlot;
     private final Random rand;
 
     private boolean triggerBackupBeforeNextModification;
 
 
     public GameBoardArray(int width, int height) {
+        this(width, height, new GameRandom());
+    }
+
+    /** @param rand source for initCells and randomlyAddCell; seed it for reproducible games */
+    GameBoardArray(int width, int height, Random rand) {
         if (width <= 0)  width  = 1;
         if (height <= 0) height = 1;
         this.width  = width;
         this.height = height;
-        rand = new Random();
-
-        gameBoardContent = new int[width][height];
-        searchBoard      = new int[width][height];
+        this.rand = rand;
+
+        stride = width + 2;
+        gameBoardContent = new int[stride * (height + 2)];
+        searchStamp      = new int[stride * (height + 2)];
+        searchParent     = new int[stride * (height + 2)];
+        searchQueue      = new int[width * height];
+        pathBuffer       = new byte[width * height];
+        freeCells        = new int[width * height];
+        freeSlot         = new int[stride * (height + 2)];
+        freeRanks        = new int[width * height + 1];
+        freeRanksTopBit  = Integer.highestOneBit(width * height);
+        regionLabel      = new int[stride * (height + 2)];
+        groupParent      = new int[stride * (height + 2)];
+        groupSize        = new int[stride * (height + 2)];
+        groupNext        = new int[stride * (height + 2)];
+        groupMin         = new int[stride * (height + 2)];
+        mergeableRoots   = new int[width * height];
+        mergeableSlot    = new int[stride * (height + 2)];
+        valueSlot        = new int[stride * (height + 2)];
         clear();
     }
 
     public void clear() {
-        undoStack.clear();
+        boardVersion++;
+        Arrays.fill(pathCacheVersion, -1L);
+        zobristHash = 0L;
+        Arrays.fill(valueCount, 0);
+        journalHead = journalTail = 0;
+        moveHead = moveTail = 0;
         triggerBackupBeforeNextModification = false;
+        Arrays.fill(gameBoardContent, BORDER);
+        Arrays.fill(freeSlot, -1);
+        numFreeCells = 0;
+        for (int i = 1; i < freeRanks.length; i++) {
+            freeRanks[i] = i & -i; // every cell empty
+        }
         for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                gameBoardContent[x][y] = -1;
-                searchBoard[x][y] = 0;
+            int row = index(0, y);
+            for (int i = row; i < row + width; i++) {
+                gameBoardContent[i] = EMPTY;
+                freeSlot[i] = numFreeCells;
+                freeCells[numFreeCells++] = i;
             }
         }
+        rebuildGroups();
+        regionsDirty = true;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Number of board cells; a direction buffer of this size fits every path. */
+    public int getNumCells() {
+        return width * height;
+    }
+
+    /** Flat index of board cell (x, y); x and y must be inside the board. */
+    private int index(int x, int y) {
+        return (y + 1) * stride + x + 1;
+    }
+
+    private int indexToX(int index) {
+        return index % stride - 1;
+    }
+
+    private int indexToY(int index) {
+        return index / stride - 1;
     }
 
     public void initCells(int numFields) {
         if (numFields == -1) {
             initCellsForDebugging();
         } else {
-            int freeCells = getNumFreeCells();
-            if (numFields > freeCells) {
-                numFields = freeCells;
+            if (numFields > numFreeCells) {
+                numFields = numFreeCells;
             }
             for (int field = 0; field < numFields; field++) {
-                int x, y;
-                do {
-                    x = rand.nextInt(width);
-                    y = rand.nextInt(height);
-                } while (!isFree(x, y));
-                set(x, y, field);
+                int cell = nthFreeCell(rand.nextInt(numFreeCells));
+                set(indexToX(cell), indexToY(cell), field);
             }
         }
     }
@@ -84,31 +244,55 @@ public class GameBoardArray {
         }
     }
 
+    /**
+     * Puts a random value from [minIndex, maxIndex] on a uniformly chosen free cell.
+     *
+     * @return the filled cell, or null if the board is full
+     */
     public Coord randomlyAddCell(int minIndex, int maxIndex) {
-        int x, y, index;
-        do {
-            x     = rand.nextInt(width);
-            y     = rand.nextInt(height);
-            index = rand.nextInt(maxIndex - minIndex + 1) + minIndex;
-        } while (!isFree(x, y));
-        set(x, y, index);
-        return new Coord(x, y);
+        if (numFreeCells == 0) {
+            return null;
+        }
+        int cell  = nthFreeCell(rand.nextInt(numFreeCells));
+        int index = rand.nextInt(maxIndex - minIndex + 1) + minIndex;
+        Coord c = new Coord(indexToX(cell), indexToY(cell));
+        set(c.x, c.y, index);
+        return c;
     }
 
-    public int getNumFreeCells() {
-        int freeCells = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (isFree(x, y)) freeCells++;
+    /**
+     * The n-th empty cell in row-major order. The free list's own order depends on
+     * the order of earlier writes, which differs between an animated move and the
+     * same move applied at once; picking by board order keeps seeded games
+     * reproducible from their actions alone.
+     */
+    private int nthFreeCell(int n) {
+        int rank = 0;
+        for (int step = freeRanksTopBit; step > 0; step >>= 1) {
+            int next = rank + step;
+            if (next < freeRanks.length && freeRanks[next] <= n) {
+                rank = next;
+                n -= freeRanks[next];
             }
         }
-        return freeCells;
+        return index(rank % width, rank / width);
+    }
+
+    /** Adds delta to the empty-cell count at index's row-major rank. */
+    private void updateFreeRank(int index, int delta) {
+        for (int i = indexToY(index) * width + indexToX(index) + 1; i < freeRanks.length; i += i & -i) {
+            freeRanks[i] += delta;
+        }
+    }
+
+    public int getNumFreeCells() {
+        return numFreeCells;
     }
 
     public int get(int x, int y) {
         x = clampX(x);
         y = clampY(y);
-        return gameBoardContent[x][y];
+        return gameBoardContent[index(x, y)];
     }
 
     public void set(int x, int y, int val) {
@@ -116,16 +300,135 @@ public class GameBoardArray {
         y = clampY(y);
 
         if (triggerBackupBeforeNextModification) {
-            pushSnapshot();
+            beginUndoMove();
             triggerBackupBeforeNextModification = false;
         }
 
-        gameBoardContent[x][y] = val;
+        int index = index(x, y);
+        if (gameBoardContent[index] != val) {
+            recordChange(index, gameBoardContent[index]);
+            write(index, val);
+        }
+    }
+
+    /** Stores val at a flat index and keeps all derived indices in sync. */
+    private void write(int index, int val) {
+        int old = gameBoardContent[index];
+        if (old == val) {
+            return;
+        }
+        gameBoardContent[index] = val;
+        boardVersion++;
+
+        if (old == EMPTY) {
+            removeFreeCell(index);
+            regionsDirty = true;
+        } else if (val == EMPTY) {
+            addFreeCell(index);
+            regionsDirty = true;
+        }
+
+        if (old != EMPTY) zobristHash ^= zobristKey(index, old);
+        if (val != EMPTY) zobristHash ^= zobristKey(index, val);
+
+        if (old != EMPTY) removeValueCell(index, old);
+        if (val != EMPTY) addValueCell(index, val);
+
+        updateGroups(index, old, val);
+    }
+
+    /** Changes whenever any cell changes; equal versions mean an unchanged board. */
+    public long getVersion() {
+        return boardVersion;
+    }
+
+    /**
+     * 64-bit Zobrist hash of the current board. Boards of the same size with the
+     * same content have the same hash, regardless of how they got there.
+     */
+    public long getHash() {
+        return zobristHash;
+    }
+
+    /** Pseudo-random key of a (cell, value) pair: {@link GameRandom#mix} over both. */
+    static long zobristKey(int index, int value) {
+        return GameRandom.mix(ZOBRIST_SEED ^ (((long) index << 32) | (value & 0xffffffffL)));
+    }
+
+    /** Number of cells currently holding value; O(1). */
+    public int getValueCount(int value) {
+        return (value >= 0 && value < valueCount.length) ? valueCount[value] : 0;
+    }
+
+    /** All cells holding value, in no particular order; O(result). */
+    public List<Coord> findCellsWithValue(int value) {
+        List<Coord> cells = new ArrayList<>(getValueCount(value));
+        addCellsWithValue(value, cells);
+        return cells;
+    }
+
+    /** All occupied cells whose value is below minIndex; O(result + minIndex). */
+    public List<Coord> findCellsBelowValue(int minIndex) {
+        List<Coord> cells = new ArrayList<>();
+        int limit = Math.min(minIndex, valueCount.length);
+        for (int value = 0; value < limit; value++) {
+            addCellsWithValue(value, cells);
+        }
+        return cells;
+    }
+
+    private void addCellsWithValue(int value, List<Coord> out) {
+        for (int i = 0; i < getValueCount(value); i++) {
+            int cell = valueCells[value][i];
+            out.add(new Coord(indexToX(cell), indexToY(cell)));
+        }
+    }
+
+    private void addValueCell(int index, int value) {
+        if (value >= valueCount.length) {
+            int capacity = Math.max(valueCount.length * 2, value + 1);
+            valueCells = Arrays.copyOf(valueCells, capacity);
+            valueCount = Arrays.copyOf(valueCount, capacity);
+        }
+        int[] cells = valueCells[value];
+        if (cells == null) {
+            cells = new int[Math.min(INITIAL_VALUE_CAPACITY, width * height)];
+        } else if (valueCount[value] == cells.length) {
+            cells = Arrays.copyOf(cells, Math.min(cells.length * 2, width * height));
+        }
+        valueCells[value] = cells;
+        valueSlot[index] = valueCount[value];
+        cells[valueCount[value]++] = index;
+    }
+
+    private void removeValueCell(int index, int value) {
+        // move the last entry into the vacated slot
+        int[] cells = valueCells[value];
+        int slot = valueSlot[index];
+        int last = cells[--valueCount[value]];
+        cells[slot] = last;
+        valueSlot[last] = slot;
+    }
+
+    private void addFreeCell(int index) {
+        freeSlot[index] = numFreeCells;
+        freeCells[numFreeCells++] = index;
+        updateFreeRank(index, 1);
+    }
+
+    private void removeFreeCell(int index) {
+        // move the last entry into the vacated slot
+        int slot = freeSlot[index];
+        int last = freeCells[--numFreeCells];
+        freeCells[slot] = last;
+        freeSlot[last]  = slot;
+        freeSlot[index] = -1;
+        updateFreeRank(index, -1);
     }
 
     public boolean isFree(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) return false;
-        return gameBoardContent[x][y] == -1;
+        return gameBoardContent[index(x, y)] == EMPTY;
     }
 
     /** Clamps x to valid column range. */
@@ -138,175 +441,461 @@ public class GameBoardArray {
         return Math.max(0, Math.min(y, height - 1));
     }
 
+    /**
+     * Shortest path over empty cells from start to target.
+     * The list is in reverse order: the first step is the last element.
+     * An empty list means the target is not reachable.
+     */
     public List<GameBoard.directionT> findPath(int startPositionX, int startPositionY,
                                                int targetPositionX, int targetPositionY,
                                                boolean allowTargetPosCollision) {
-        // Initialize search board for BFS
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                searchBoard[x][y] = MAX_PATH_LEN;
+        int length = findPath(startPositionX, startPositionY, targetPositionX, targetPositionY,
+                allowTargetPosCollision, pathBuffer);
+        List<GameBoard.directionT> path = new ArrayList<>(Math.max(length, 0));
+        for (int i = length - 1; i >= 0; i--) {
+            path.add(DIRECTIONS[pathBuffer[i]]);
+        }
+        return path;
+    }
+
+    /**
+     * Allocation-free variant of {@link #findPath(int, int, int, int, boolean)}.
+     * Writes the steps in move order as DIR_* codes into {@code directions}, which must
+     * hold at least {@link #getNumCells()} entries.
+     *
+     * @return number of steps written, or -1 if the target is not reachable
+     */
+    public int findPath(int startPositionX, int startPositionY,
+                        int targetPositionX, int targetPositionY,
+                        boolean allowTargetPosCollision, byte[] directions) {
+        int start  = index(clampX(startPositionX), clampY(startPositionY));
+        int target = index(clampX(targetPositionX), clampY(targetPositionY));
+        if (start == target) {
+            return 0;
+        }
+        if (gameBoardContent[target] != EMPTY && !allowTargetPosCollision) {
+            return -1;
+        }
+
+        int slot = pathCacheSlot(start, target, allowTargetPosCollision);
+        if (pathCacheVersion[slot] == boardVersion && pathCacheStart[slot] == start
+                && pathCacheTarget[slot] == target && pathCacheAllow[slot] == allowTargetPosCollision) {
+            pathCacheHits++;
+            int length = pathCacheLength[slot];
+            if (length > 0) {
+                System.arraycopy(pathCacheSteps[slot], 0, directions, 0, length);
+            }
+            return length;
+        }
+        pathCacheMisses++;
+
+        int length = -1;
+        if (canReach(start, target) && searchFromTarget(start, target)) {
+            // Parents point towards the target, so following them from the start
+            // yields the steps in move order.
+            length = 0;
+            for (int pos = start; pos != target; pos = searchParent[pos]) {
+                directions[length++] = directionOf(searchParent[pos] - pos);
             }
         }
-        searchBoard[startPositionX][startPositionY] = 0;
+        storePath(slot, start, target, allowTargetPosCollision, directions, length);
+        return length;
+    }
 
-        Coord start  = new Coord(startPositionX, startPositionY);
-        Coord target = new Coord(targetPositionX, targetPositionY);
+    /** Number of findPath queries answered from the path cache. */
+    public long getPathCacheHits() {
+        return pathCacheHits;
+    }
 
-        List<Coord> startList = new ArrayList<>();
-        startList.add(new Coord(startPositionX, startPositionY));
+    /** Number of findPath queries that had to search. */
+    public long getPathCacheMisses() {
+        return pathCacheMisses;
+    }
 
-        int tempTargetValue = get(targetPositionX, targetPositionY);
-        if (allowTargetPosCollision) {
-            set(targetPositionX, targetPositionY, -1);
-        }
+    private static int pathCacheSlot(int start, int target, boolean allowTargetPosCollision) {
+        int h = start * 31 + target;
+        h ^= h >>> 16;
+        h = h * 2 + (allowTargetPosCollision ? 1 : 0);
+        return h & (PATH_CACHE_SIZE - 1);
+    }
 
-        boolean pathExists = buildSearchBoard(startList, target, 0);
+    private void storePath(int slot, int start, int target, boolean allowTargetPosCollision,
+                           byte[] directions, int length) {
+        if (length > 0) {
+            byte[] steps = pathCacheSteps[slot];
+            if (steps == null || steps.length < length) {
+                steps = new byte[Math.max(length, 16)];
+                pathCacheSteps[slot] = steps;
+            }
+            System.arraycopy(directions, 0, steps, 0, length);
+        }
+        pathCacheVersion[slot] = boardVersion;
+        pathCacheStart[slot]   = start;
+        pathCacheTarget[slot]  = target;
+        pathCacheAllow[slot]   = allowTargetPosCollision;
+        pathCacheLength[slot]  = length;
+    }
 
-        List<GameBoard.directionT> path;
-        if (pathExists) {
-            path = findShortestPath(target, start);
-        } else {
-            path = new ArrayList<>(); // empty path means target is not reachable
+    /**
+     * Breadth-first search over empty cells, starting at the target and stopping
+     * as soon as a cell next to the start is expanded. Fills searchParent.
+     */
+    private boolean searchFromTarget(int start, int target) {
+        int stamp = nextSearchStamp();
+        int head = 0;
+        int tail = 0;
+        searchStamp[target] = stamp;
+        searchQueue[tail++] = target;
+
+        while (head < tail) {
+            int curr = searchQueue[head++];
+            // try left, right, up and down; the sentinel frame is never EMPTY
+            for (int d = 0; d < 4; d++) {
+                int next = curr + neighbourOffset(d);
+                if (next == start) {
+                    searchParent[start] = curr;
+                    return true;
+                }
+                if (gameBoardContent[next] == EMPTY && searchStamp[next] != stamp) {
+                    searchStamp[next]  = stamp;
+                    searchParent[next] = curr;
+                    searchQueue[tail++] = next;
+                }
+            }
         }
+        return false;
+    }
 
-        if (allowTargetPosCollision) {
-            set(targetPositionX, targetPositionY, tempTargetValue);
+    /**
+     * Whether {@link #findPath} finds a path from start to target, without searching:
+     * O(1) once the empty regions are labelled.
+     */
+    public boolean canReach(int startPositionX, int startPositionY,
+                            int targetPositionX, int targetPositionY,
+                            boolean allowTargetPosCollision) {
+        int start  = index(clampX(startPositionX), clampY(startPositionY));
+        int target = index(clampX(targetPositionX), clampY(targetPositionY));
+        if (start == target) {
+            return true;
         }
+        if (gameBoardContent[target] != EMPTY && !allowTargetPosCollision) {
+            return false;
+        }
+        return canReach(start, target);
+    }
 
-        return path;
+    /**
+     * Number of the empty region containing (x, y), starting at 1; 0 for an occupied
+     * cell. Two empty cells are connected iff their region numbers are equal.
+     */
+    public int getEmptyRegion(int x, int y) {
+        ensureRegions();
+        return regionLabel[index(clampX(x), clampY(y))];
     }
 
-    private List<GameBoard.directionT> findShortestPath(Coord pos, Coord start) {
-        List<GameBoard.directionT> res = new ArrayList<>();
+    public int getNumEmptyRegions() {
+        ensureRegions();
+        return numEmptyRegions;
+    }
 
-        if (pos.x == start.x && pos.y == start.y) {
-            return res;
+    /** The cell at start can step onto target through empty cells; target may be occupied. */
+    private boolean canReach(int start, int target) {
+        ensureRegions();
+        if (gameBoardContent[target] == EMPTY) {
+            return touchesRegion(start, regionLabel[target]);
         }
+        for (int d = 0; d < 4; d++) {
+            int next = target + neighbourOffset(d);
+            if (next == start || (regionLabel[next] != 0 && touchesRegion(start, regionLabel[next]))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        int x   = pos.x;
-        int y   = pos.y;
-        int min = MAX_PATH_LEN;
-        GameBoard.directionT dir = GameBoard.directionT.LEFT;
+    private boolean touchesRegion(int index, int label) {
+        return regionLabel[index - 1] == label || regionLabel[index + 1] == label
+            || regionLabel[index - stride] == label || regionLabel[index + stride] == label;
+    }
 
-        // Find min in all directions.
-        // Since we search backwards from target to start, directions are flipped.
-        if (x > 0 && searchBoard[x - 1][y] < min) {
-            min   = searchBoard[x - 1][y];
-            dir   = GameBoard.directionT.RIGHT;
-            pos.x = x - 1;
-            pos.y = y;
+    private void ensureRegions() {
+        if (regionsDirty) {
+            rebuildRegions();
         }
-        if (x < width - 1 && searchBoard[x + 1][y] < min) {
-            min   = searchBoard[x + 1][y];
-            dir   = GameBoard.directionT.LEFT;
-            pos.x = x + 1;
-            pos.y = y;
+    }
+
+    /** Labels every empty region with a breadth-first fill; reuses searchQueue. */
+    private void rebuildRegions() {
+        Arrays.fill(regionLabel, 0);
+        numEmptyRegions = 0;
+        for (int f = 0; f < numFreeCells; f++) {
+            int seed = freeCells[f];
+            if (regionLabel[seed] != 0) continue;
+
+            int label = ++numEmptyRegions;
+            int head = 0;
+            int tail = 0;
+            regionLabel[seed] = label;
+            searchQueue[tail++] = seed;
+            while (head < tail) {
+                int curr = searchQueue[head++];
+                for (int d = 0; d < 4; d++) {
+                    int next = curr + neighbourOffset(d);
+                    if (gameBoardContent[next] == EMPTY && regionLabel[next] == 0) {
+                        regionLabel[next] = label;
+                        searchQueue[tail++] = next;
+                    }
+                }
+            }
         }
-        if (y > 0 && searchBoard[x][y - 1] < min) {
-            min   = searchBoard[x][y - 1];
-            dir   = GameBoard.directionT.DOWN;
-            pos.x = x;
-            pos.y = y - 1;
+        regionsDirty = false;
+    }
+
+    private int nextSearchStamp() {
+        if (++currentSearchStamp == Integer.MAX_VALUE) {
+            Arrays.fill(searchStamp, 0);
+            currentSearchStamp = 1;
         }
-        if (y < height - 1 && searchBoard[x][y + 1] < min) {
-            dir   = GameBoard.directionT.UP;
-            pos.x = x;
-            pos.y = y + 1;
+        return currentSearchStamp;
+    }
+
+    private int neighbourOffset(int d) {
+        switch (d) {
+            case 0:  return -1;
+            case 1:  return 1;
+            case 2:  return -stride;
+            default: return stride;
         }
+    }
 
-        res.add(dir);
-        res.addAll(findShortestPath(pos, start));
-        return res;
+    private byte directionOf(int offset) {
+        if (offset == -1) return DIR_LEFT;
+        if (offset == 1)  return DIR_RIGHT;
+        return offset < 0 ? DIR_UP : DIR_DOWN;
     }
 
-    private boolean buildSearchBoard(List<Coord> startList, Coord target, int depth) {
-        boolean targetFound = false;
-        depth++;
-        List<Coord> newFront = new ArrayList<>();
 
-        for (Coord curr : startList) {
-            if (targetFound) break;
-            int x = curr.x;
-            int y = curr.y;
+    /**
+     * All cells connected to (x, y) that hold the same value, including (x, y).
+     * An empty cell forms a group of its own.
+     */
+    public Set<Coord> findMergeGroup(int x, int y) {
+        ensureGroups();
+        int start = index(clampX(x), clampY(y));
+        Set<Coord> currMergeSet = new LinkedHashSet<>();
+        int member = start;
+        do {
+            currMergeSet.add(new Coord(indexToX(member), indexToY(member)));
+            member = groupNext[member];
+        } while (member != start);
+        return currMergeSet;
+    }
 
-            if (target.x == x && target.y == y) {
-                targetFound = true;
-            } else {
-                // try left
-                if (x >= 1 && gameBoardContent[x - 1][y] == -1 && searchBoard[x - 1][y] > depth) {
-                    newFront.add(new Coord(x - 1, y));
-                    searchBoard[x - 1][y] = depth;
-                }
-                // try right
-                if (x < width - 1 && gameBoardContent[x + 1][y] == -1 && searchBoard[x + 1][y] > depth) {
-                    newFront.add(new Coord(x + 1, y));
-                    searchBoard[x + 1][y] = depth;
-                }
-                // try up
-                if (y >= 1 && gameBoardContent[x][y - 1] == -1 && searchBoard[x][y - 1] > depth) {
-                    newFront.add(new Coord(x, y - 1));
-                    searchBoard[x][y - 1] = depth;
-                }
-                // try down
-                if (y < height - 1 && gameBoardContent[x][y + 1] == -1 && searchBoard[x][y + 1] > depth) {
-                    newFront.add(new Coord(x, y + 1));
-                    searchBoard[x][y + 1] = depth;
-                }
-            }
+    /** Size of the merge group containing (x, y); 0 for an empty cell. */
+    public int getMergeGroupSize(int x, int y) {
+        ensureGroups();
+        return groupSize[findRoot(index(clampX(x), clampY(y)))];
+    }
+
+    /**
+     * The first cell in row-major order that belongs to a group with at least
+     * MIN_COMBO_SIZE members, where a board-wide merge scan lands. Depends only on
+     * the board content, not on the order the cells were written in.
+     *
+     * @return the cell, or null if nothing on the board can merge
+     */
+    public Coord findMergeCandidate() {
+        ensureGroups();
+        if (numMergeableRoots == 0) {
+            return null;
+        }
+        int first = Integer.MAX_VALUE;
+        for (int i = 0; i < numMergeableRoots; i++) {
+            first = Math.min(first, groupMin[mergeableRoots[i]]);
         }
+        return new Coord(indexToX(first), indexToY(first));
+    }
 
-        if (!targetFound) {
-            if (!newFront.isEmpty()) {
-                return buildSearchBoard(newFront, target, depth);
+    private void ensureGroups() {
+        if (groupsDirty) {
+            rebuildGroups();
+        }
+    }
+
+    private void rebuildGroups() {
+        Arrays.fill(mergeableSlot, -1);
+        numMergeableRoots = 0;
+        for (int y = 0; y < height; y++) {
+            int row = index(0, y);
+            for (int i = row; i < row + width; i++) {
+                resetGroup(i, gameBoardContent[i]);
             }
-            return false;
         }
-        return true;
+        // the sentinel frame never matches, so right and down neighbours need no checks
+        for (int y = 0; y < height; y++) {
+            int row = index(0, y);
+            for (int i = row; i < row + width; i++) {
+                int val = gameBoardContent[i];
+                if (val == EMPTY) continue;
+                if (gameBoardContent[i + 1] == val)      unionGroups(i, i + 1);
+                if (gameBoardContent[i + stride] == val) unionGroups(i, i + stride);
+            }
+        }
+        groupsDirty = false;
     }
 
+    private void updateGroups(int index, int old, int val) {
+        if (groupsDirty) {
+            return; // rebuilt on the next query anyway
+        }
+        if (old != EMPTY && groupSize[findRoot(index)] > 1) {
+            // removing a cell may split its group
+            groupsDirty = true;
+            return;
+        }
+        resetGroup(index, val);
+        if (val == EMPTY) {
+            return;
+        }
+        if (gameBoardContent[index - 1] == val)      unionGroups(index, index - 1);
+        if (gameBoardContent[index + 1] == val)      unionGroups(index, index + 1);
+        if (gameBoardContent[index - stride] == val) unionGroups(index, index - stride);
+        if (gameBoardContent[index + stride] == val) unionGroups(index, index + stride);
+    }
 
-    public Set<Coord> findMergeGroup(int x, int y) {
-        int mergeValue = gameBoardContent[x][y];
-        Set<Coord> currMergeSet = new TreeSet<>();
-        currMergeSet.add(new Coord(x, y));
-        findMergeGroupDFS(x, y, mergeValue, currMergeSet);
-        return currMergeSet;
+    private void resetGroup(int index, int val) {
+        groupParent[index] = index;
+        groupNext[index]   = index;
+        groupMin[index]    = index;
+        groupSize[index]   = (val == EMPTY) ? 0 : 1;
     }
 
-    private void findMergeGroupDFS(int x, int y, int mergeValue, Set<Coord> currMergeSet) {
-        // Try all 4 directions
-        tryMergeDirection(x - 1, y, mergeValue, currMergeSet);
-        tryMergeDirection(x + 1, y, mergeValue, currMergeSet);
-        tryMergeDirection(x, y - 1, mergeValue, currMergeSet);
-        tryMergeDirection(x, y + 1, mergeValue, currMergeSet);
+    private int findRoot(int index) {
+        while (groupParent[index] != index) {
+            groupParent[index] = groupParent[groupParent[index]]; // path halving
+            index = groupParent[index];
+        }
+        return index;
     }
 
-    private void tryMergeDirection(int nx, int ny, int mergeValue, Set<Coord> currMergeSet) {
-        if (nx < 0 || nx >= width || ny < 0 || ny >= height) return;
-        if (gameBoardContent[nx][ny] != mergeValue) return;
-        Coord c = new Coord(nx, ny);
-        if (currMergeSet.add(c)) { // add returns false if already present
-            findMergeGroupDFS(nx, ny, mergeValue, currMergeSet);
+    private void unionGroups(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (groupSize[rootA] < groupSize[rootB]) {
+            int t = rootA;
+            rootA = rootB;
+            rootB = t;
+        }
+        groupParent[rootB] = rootA;
+        groupSize[rootA] += groupSize[rootB];
+        groupMin[rootA] = Math.min(groupMin[rootA], groupMin[rootB]);
+
+        // splice the two member rings into one
+        int next = groupNext[rootA];
+        groupNext[rootA] = groupNext[rootB];
+        groupNext[rootB] = next;
+
+        if (mergeableSlot[rootB] != -1) {
+            removeMergeableRoot(rootB);
         }
+        if (groupSize[rootA] >= MIN_COMBO_SIZE && mergeableSlot[rootA] == -1) {
+            mergeableSlot[rootA] = numMergeableRoots;
+            mergeableRoots[numMergeableRoots++] = rootA;
+        }
+    }
+
+    private void removeMergeableRoot(int root) {
+        int slot = mergeableSlot[root];
+        int last = mergeableRoots[--numMergeableRoots];
+        mergeableRoots[slot] = last;
+        mergeableSlot[last]  = slot;
+        mergeableSlot[root]  = -1;
     }
 
 
-    private void pushSnapshot() {
-        int[][] snapshot = new int[width][height];
-        for (int y = 0; y < height; y++)
-            for (int x = 0; x < width; x++)
-                snapshot[x][y] = gameBoardContent[x][y];
-        undoStack.push(snapshot);
-        if (undoStack.size() > MAX_UNDO_DEPTH)
-            undoStack.pollLast();
+    /**
+     * Limits how many moves unrollBackup can take back; older moves are dropped.
+     * Use UNLIMITED_UNDO_DEPTH to keep every move. Memory grows with the number
+     * of changed cells, not with the board size.
+     */
+    public void setUndoDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Negative undo depth: " + depth);
+        }
+        undoDepth = depth;
+        while (moveTail - moveHead > undoDepth) {
+            dropOldestUndoMove();
+        }
     }
 
+    public int getUndoDepth() {
+        return undoDepth;
+    }
+
+    /** Number of moves unrollBackup can currently take back. */
+    public int getNumUndoMoves() {
+        return moveTail - moveHead;
+    }
+
+    private void beginUndoMove() {
+        if (undoDepth == 0) {
+            return;
+        }
+        if (moveTail - moveHead == undoDepth) {
+            dropOldestUndoMove();
+        }
+        if (moveTail - moveHead == moveStarts.length) {
+            int[] grown = new int[moveStarts.length * 2];
+            for (int seq = moveHead; seq != moveTail; seq++) {
+                grown[seq & (grown.length - 1)] = moveStarts[seq & (moveStarts.length - 1)];
+            }
+            moveStarts = grown;
+        }
+        moveStarts[moveTail++ & (moveStarts.length - 1)] = journalTail;
+    }
+
+    private void dropOldestUndoMove() {
+        moveHead++;
+        journalHead = (moveHead == moveTail) ? journalTail : moveStarts[moveHead & (moveStarts.length - 1)];
+    }
+
+    private void recordChange(int index, int oldVal) {
+        if (moveHead == moveTail) {
+            return; // nothing to undo into
+        }
+        if (journalTail - journalHead == journalCell.length) {
+            growJournal();
+        }
+        int pos = journalTail++ & (journalCell.length - 1);
+        journalCell[pos] = index;
+        journalOld[pos]  = oldVal;
+    }
+
+    private void growJournal() {
+        int capacity = journalCell.length * 2;
+        int[] cells = new int[capacity];
+        int[] olds  = new int[capacity];
+        for (int seq = journalHead; seq != journalTail; seq++) {
+            int from = seq & (journalCell.length - 1);
+            int to   = seq & (capacity - 1);
+            cells[to] = journalCell[from];
+            olds[to]  = journalOld[from];
+        }
+        journalCell = cells;
+        journalOld  = olds;
+    }
+
+    /** Restores the board to how it was before the latest undoable move; O(changes). */
     public void unrollBackup() {
-        int[][] snapshot = undoStack.poll();
-        if (snapshot == null) return;
-        for (int y = 0; y < height; y++)
-            for (int x = 0; x < width; x++)
-                gameBoardContent[x][y] = snapshot[x][y];
+        if (moveHead == moveTail) return;
+        int moveStart = moveStarts[--moveTail & (moveStarts.length - 1)];
+        while (journalTail != moveStart) {
+            int pos = --journalTail & (journalCell.length - 1);
+            write(journalCell[pos], journalOld[pos]);
+        }
     }
 
     public void backupGameBoardWithNextModification() {
@@ -314,11 +903,11 @@ public class GameBoardArray {
     }
 
     public void removeAllCellsBelowIndex(int minIndex) {
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (gameBoardContent[x][y] != -1 && gameBoardContent[x][y] < minIndex) {
-                    set(x, y, -1);
-                }
+        int limit = Math.min(minIndex, valueCount.length);
+        for (int value = 0; value < limit; value++) {
+            while (valueCount[value] > 0) {
+                int cell = valueCells[value][valueCount[value] - 1];
+                set(indexToX(cell), indexToY(cell), -1);
             }
         }
     }
@@ -331,7 +920,7 @@ public class GameBoardArray {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             return false;
         }
-        if (gameBoardContent[x][y] == -1) {
+        if (gameBoardContent[index(x, y)] == -1) {
             return false;
         }
         set(x, y, -1);
@@ -343,7 +932,7 @@ public class GameBoardArray {
             return;
         }
         for (int x = width - 1; x >= 1; x--) {
-            set(x, y, gameBoardContent[x - 1][y]);
+            set(x, y, gameBoardContent[index(x - 1, y)]);
         }
         set(0, y, -1);
     }
@@ -353,7 +942,7 @@ public class GameBoardArray {
             return;
         }
         for (int y = height - 1; y >= 1; y--) {
-            set(x, y, gameBoardContent[x][y - 1]);
+            set(x, y, gameBoardContent[index(x, y - 1)]);
         }
         set(x, 0, -1);
     }
@@ -0,0 +1,554 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The game rules without Android: board, score, level progression, bonus
+ * economy and drop-ins. GameBoard drives it one step at a time from its
+ * animations (merge, finalizeChainScore, dropIn, ...); simulations call apply,
+ * which runs the same steps for a whole {@link GameAction} at once. All
+ * randomness (the opening cells, drop-ins and bonus awards) comes from one
+ * {@link GameRandom} seeded per game, so a seed and a sequence of actions
+ * replay the same game.
+ */
+final class GameEngine {
+
+    /** Progression events, for animations. Called before the engine moves on. */
+    interface Listener {
+        /**
+         * The score reached level. cellsToPrune still hold their values and are
+         * emptied as soon as this returns.
+         */
+        void onLevelUp(int level, List<Coord> cellsToPrune);
+
+        /** The score passed a bonus step; bonuses holds the awarded indices in draw order. */
+        void onBonusesAwarded(int[] bonuses);
+    }
+
+    private static final int INITIAL_CELLS = 4;
+
+    private final int width, height;
+    private final GameRandom rand;
+    private long seed;
+    private final GameBoardArray board;
+    private final int[] bonusCounts = new int[GameRules.BONUS_BUY_COSTS.length];
+    private final FlatBoard rules;
+    private final int[] flat, labels;
+    private Listener listener;
+    private Replay.Recorder recorder;
+
+    private long score;
+    private int level;
+    private long nextScoreForBonus;
+    private long chainScoreProduct;
+    private int chainLength;
+    private int dropInCount;
+    private boolean gameOver;
+    private int moveCount;
+
+    GameEngine(int width, int height, long seed) {
+        this(width, height, new GameRandom(seed));
+    }
+
+    /**
+     * Starts a game from rand's current state.
+     *
+     * @param rand source of every random choice; owned by this engine from now on
+     * @throws IllegalArgumentException if the board has more cells than a
+     *         {@link GameAction} can address
+     */
+    GameEngine(int width, int height, GameRandom rand) {
+        GameAction.checkBoardSize(width, height);
+        this.width = width;
+        this.height = height;
+        this.rand = rand;
+        board = new GameBoardArray(width, height, rand);
+        rules = new FlatBoard(width, height);
+        flat = new int[width * height];
+        labels = new int[width * height];
+        newGame(rand.getState());
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Records every action and drop-in, from the next newGame on; null stops recording. */
+    void setRecorder(Replay.Recorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /** Starts over like GameBoard.gameInit with the game seeded by seed. */
+    void newGame(long seed) {
+        this.seed = seed;
+        rand.setSeed(seed);
+        if (recorder != null) {
+            recorder.start(width, height, seed);
+        }
+        board.clear();
+        board.initCells(INITIAL_CELLS);
+        score = 0L;
+        level = 1;
+        nextScoreForBonus = GameRules.getBonusStepForLevel(1);
+        chainScoreProduct = 0L;
+        chainLength = 0;
+        dropInCount = 0;
+        gameOver = false;
+        moveCount = 0;
+        Arrays.fill(bonusCounts, 0);
+        for (int i = 0; i < GameRules.BONUSES_PER_AWARD; i++) {
+            bonusCounts[GameRules.pickWeightedBonus(bonusCounts, rand)]++;
+        }
+    }
+
+    /** Plays decision like {@link #apply(int)}; false for null. */
+    boolean apply(SelfPlayBot.BotDecision decision) {
+        return apply(GameAction.fromDecision(decision, width));
+    }
+
+    /**
+     * Plays a {@link GameAction} to the point where the next action may be selected.
+     * Every action but undo and buy can be taken back by a later undo, as in GameBoard.
+     *
+     * @return false if the action is not legal now; nothing changed then
+     */
+    boolean apply(int action) {
+        if (gameOver || action == GameAction.NONE) {
+            return false;
+        }
+        int type = GameAction.type(action);
+        if (type > GameAction.BUY) {
+            return false;
+        }
+        int bonus = GameAction.bonusIndex(action);
+        if (bonus >= 0 && bonusCounts[bonus] == 0) {
+            return false;
+        }
+        int a = GameAction.first(action), b = GameAction.second(action);
+        int x = a % width, y = a / width, tx = b % width, ty = b / width;
+        boolean isRow = GameAction.isRow(action);
+        switch (type) {
+            case GameAction.NORMAL:
+                if (!isOccupied(a) || !isEmpty(b) || !board.canReach(x, y, tx, ty, false)) {
+                    return false;
+                }
+                begin(action);
+                moveCell(x, y, tx, ty);
+                dropInCount = GameRules.DROP_INS_AFTER_MOTION;
+                resolveAt(tx, ty);
+                break;
+            case GameAction.JUMP:
+                if (!isOccupied(a) || !isEmpty(b)) {
+                    return false;
+                }
+                begin(action);
+                moveCell(x, y, tx, ty);
+                dropInCount = 0;
+                resolveAt(tx, ty);
+                break;
+            case GameAction.SWAP:
+                if (a == b || !isOccupied(a) || !isOccupied(b) || !board.canReach(x, y, tx, ty, true)) {
+                    return false;
+                }
+                begin(action);
+                int partner = board.get(tx, ty);
+                board.set(tx, ty, board.get(x, y));
+                board.set(x, y, partner);
+                dropInCount = 0;
+                resolveSwap(tx, ty, x, y);
+                break;
+            case GameAction.DISSOLVE:
+                if (!isOccupied(a)) {
+                    return false;
+                }
+                begin(action);
+                board.set(x, y, -1);
+                resolveAfterBonus();
+                break;
+            case GameAction.BOMB:
+                if (a >= width * height) {
+                    return false;
+                }
+                begin(action);
+                for (int bx = Math.max(0, x - 1); bx <= Math.min(width - 1, x + 1); bx++) {
+                    for (int by = Math.max(0, y - 1); by <= Math.min(height - 1, y + 1); by++) {
+                        board.set(bx, by, -1);
+                    }
+                }
+                resolveAfterBonus();
+                break;
+            case GameAction.COLOR_CLEAR:
+                if (!isOccupied(a)) {
+                    return false;
+                }
+                begin(action);
+                for (Coord c : board.findCellsWithValue(board.get(x, y))) {
+                    board.set(c.x, c.y, -1);
+                }
+                resolveAfterBonus();
+                break;
+            case GameAction.DEL_LINE:
+                if (a >= (isRow ? height : width)) {
+                    return false;
+                }
+                begin(action);
+                for (int i = 0, length = isRow ? width : height; i < length; i++) {
+                    if (isRow) board.set(i, a, -1); else board.set(a, i, -1);
+                }
+                resolveAfterBonus();
+                break;
+            case GameAction.SHIFT_LINE:
+                if (a >= (isRow ? height : width)) {
+                    return false;
+                }
+                begin(action);
+                shiftLine(a, isRow, GameAction.isForward(action));
+                resolveAfterBonus();
+                break;
+            case GameAction.UNDO:
+                if (!canUndo()) {
+                    return false;
+                }
+                recordAction(action);
+                board.unrollBackup();
+                spendBonus(bonus);
+                break;
+            case GameAction.BUY:
+                // not a move: nothing to undo and the move count stays
+                return a < bonusCounts.length && buyBonus(a);
+            default:
+                return false;
+        }
+        moveCount++;
+        return true;
+    }
+
+    /**
+     * Starts a legal action: records it, opens its undo record and spends its
+     * bonus before anything resolves, since bonus awards are weighted by the
+     * counts in hand.
+     */
+    private void begin(int action) {
+        recordAction(action);
+        board.backupGameBoardWithNextModification();
+        int bonus = GameAction.bonusIndex(action);
+        if (bonus >= 0) {
+            spendBonus(bonus);
+        }
+    }
+
+    /**
+     * Records action for a replay. apply does this itself; GameBoard, which plays
+     * actions step by step, calls it when it commits to one, before its first step.
+     */
+    void recordAction(int action) {
+        if (recorder != null) {
+            recorder.action(action);
+        }
+    }
+
+    /** Whether the board has a move for undo to take back; score and bonuses are never restored. */
+    boolean canUndo() {
+        return board.getNumUndoMoves() > 0;
+    }
+
+    /**
+     * Writes every legal action into actions, as {@link FlatBoard#generateActions}
+     * does for the current board and bonuses.
+     *
+     * @return the possibly reallocated actions array; the count is in actionCount()
+     */
+    int[] generateActions(int[] actions) {
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                flat[y * width + x] = board.get(x, y);
+        return rules.generateActions(flat, labels, bonusCounts, canUndo(), actions);
+    }
+
+    /** Number of actions written by the last generateActions. */
+    int actionCount() {
+        return rules.moveCount();
+    }
+
+    private boolean isOccupied(int cell) {
+        return cell < width * height && board.get(cell % width, cell / width) != -1;
+    }
+
+    private boolean isEmpty(int cell) {
+        return cell < width * height && board.get(cell % width, cell / width) == -1;
+    }
+
+    /** Moves every cell of the line one step; the one pushed over the edge is lost. */
+    private void shiftLine(int index, boolean isRow, boolean forward) {
+        int length = isRow ? width : height;
+        int[] line = new int[length];
+        for (int i = 0; i < length; i++) {
+            line[i] = isRow ? board.get(i, index) : board.get(index, i);
+        }
+        for (int i = 0; i < length; i++) {
+            int from = forward ? i - 1 : i + 1;
+            int val = (from >= 0 && from < length) ? line[from] : -1;
+            if (isRow) board.set(i, index, val); else board.set(index, i, val);
+        }
+    }
+
+    private void moveCell(int sx, int sy, int tx, int ty) {
+        int val = board.get(sx, sy);
+        board.set(sx, sy, -1);
+        board.set(tx, ty, val);
+    }
+
+    /**
+     * MERGE at the swap target, then at the source. Like GameBoard, a full board
+     * ends the game before the source is checked.
+     */
+    private void resolveSwap(int tx, int ty, int sx, int sy) {
+        mergeChain(tx, ty);
+        if (board.getNumFreeCells() == 0) {
+            endGame();
+            return;
+        }
+        resolveAt(sx, sy);
+    }
+
+    /** MERGE at a moved or dropped-in cell, then the drop-ins that follow. */
+    private void resolveAt(int x, int y) {
+        mergeChain(x, y);
+        finalizeChainScore();
+        if (board.getNumFreeCells() == 0) {
+            endGame();
+            return;
+        }
+        dropIns();
+    }
+
+    private void dropIns() {
+        while (dropInCount > 0) {
+            Coord c = dropIn();
+            if (c == null) {
+                return;
+            }
+            mergeChain(c.x, c.y);
+            finalizeChainScore();
+            if (board.getNumFreeCells() == 0) {
+                endGame();
+                return;
+            }
+        }
+    }
+
+    /** Board-wide merge scan after a bonus removed cells; drop-ins only refill an empty board. */
+    private void resolveAfterBonus() {
+        Coord candidate;
+        while ((candidate = board.findMergeCandidate()) != null) {
+            mergeChain(candidate.x, candidate.y);
+        }
+        finalizeChainScore();
+        refillIfEmpty();
+        dropIns();
+    }
+
+    private void mergeChain(int x, int y) {
+        while (merge(x, y) != null) {
+            // the raised value at (x, y) may complete the next group
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Steps, in the order GameBoard's animations take them
+    // -------------------------------------------------------------------------
+
+    /** Cells still to drop in for the current move: 3 after a normal move, 0 after jump or swap. */
+    void setPendingDropIns(int count) {
+        dropInCount = count;
+    }
+
+    int getPendingDropIns() {
+        return dropInCount;
+    }
+
+    /**
+     * One MERGE step at (x, y): if its group is big enough the group is emptied,
+     * (x, y) gets the next value and the merge score is multiplied into the
+     * running chain. A merge right after a normal move cancels its drop-ins.
+     *
+     * @return the merged cells including (x, y), or null if the group is too small
+     */
+    Set<Coord> merge(int x, int y) {
+        if (board.getMergeGroupSize(x, y) < GameRules.MIN_COMBO_SIZE) {
+            return null;
+        }
+        int val = board.get(x, y);
+        Set<Coord> group = board.findMergeGroup(x, y);
+        for (Coord c : group) {
+            board.set(c.x, c.y, -1);
+        }
+        board.set(x, y, val + GameRules.MERGE_VALUE_STEP);
+        if (dropInCount == GameRules.DROP_INS_AFTER_MOTION) {
+            dropInCount = 0;
+        }
+        long comboScore = GameRules.calculateMergeScore(group.size(), val, level);
+        chainScoreProduct = (chainLength == 0)
+                ? comboScore : GameRules.safeMultiply(chainScoreProduct, comboScore);
+        chainLength++;
+        return group;
+    }
+
+    /** Adds the running chain to the score, then levels up and awards bonuses as far as it reaches. */
+    void finalizeChainScore() {
+        if (chainLength == 0) {
+            return;
+        }
+        long product = chainScoreProduct;
+        chainScoreProduct = 0L;
+        chainLength = 0;
+        addScore(product);
+    }
+
+    /** Adds points outside any chain, with the same progression as a finished chain. */
+    void addScore(long points) {
+        score = GameRules.safeAdd(score, points);
+
+        int newLevel = GameRules.getLevelForScore(score, level);
+        if (newLevel != level) {
+            level = newLevel;
+            int minIndex = LevelProgression.getMinSpawnIndex(level);
+            if (listener != null) {
+                listener.onLevelUp(level, board.findCellsBelowValue(minIndex));
+            }
+            board.removeAllCellsBelowIndex(minIndex);
+            if (board.getNumFreeCells() == width * height) {
+                dropInCount = Math.max(dropInCount, GameRules.DROP_INS_AFTER_MOTION);
+            }
+        }
+        while (score >= nextScoreForBonus) {
+            int[] awarded = new int[GameRules.BONUSES_PER_AWARD];
+            for (int i = 0; i < awarded.length; i++) {
+                awarded[i] = GameRules.pickWeightedBonus(bonusCounts, rand);
+                bonusCounts[awarded[i]]++;
+            }
+            if (listener != null) {
+                listener.onBonusesAwarded(awarded);
+            }
+            nextScoreForBonus = GameRules.safeAdd(nextScoreForBonus, GameRules.getBonusStepForLevel(level));
+        }
+    }
+
+    /**
+     * Drops one pending cell with a value from the level's spawn window onto a
+     * random free cell. On a full board the game ends instead.
+     *
+     * @return the new cell, or null if the board was full
+     */
+    Coord dropIn() {
+        Coord c = board.randomlyAddCell(LevelProgression.getMinSpawnIndex(level),
+                LevelProgression.getMaxSpawnIndex(level));
+        if (c == null) {
+            dropInCount = 0;
+            endGame();
+            return null;
+        }
+        dropInCount--;
+        if (recorder != null) {
+            recorder.spawn(c.y * width + c.x, board.get(c.x, c.y));
+        }
+        return c;
+    }
+
+    /** Queues the usual drop-ins if the board is empty; true if it was. */
+    boolean refillIfEmpty() {
+        if (board.getNumFreeCells() != width * height) {
+            return false;
+        }
+        dropInCount = GameRules.DROP_INS_AFTER_MOTION;
+        return true;
+    }
+
+    /** Ends the game, keeping the chain that was still running. */
+    void endGame() {
+        finalizeChainScore();
+        gameOver = true;
+    }
+
+    int getBonusCount(int index) {
+        return bonusCounts[index];
+    }
+
+    void addBonus(int index, int amount) {
+        bonusCounts[index] += amount;
+    }
+
+    /** Uses up one bonus; false if none is left. */
+    boolean spendBonus(int index) {
+        if (bonusCounts[index] == 0) {
+            return false;
+        }
+        bonusCounts[index]--;
+        return true;
+    }
+
+    /** Buys one bonus with score points; false if the score does not cover it. */
+    boolean buyBonus(int index) {
+        long cost = GameRules.BONUS_BUY_COSTS[index];
+        if (score < cost) {
+            return false;
+        }
+        score -= cost;
+        bonusCounts[index]++;
+        if (recorder != null) {
+            recorder.action(GameAction.buy(index));
+        }
+        return true;
+    }
+
+    /** Seed the current game was started with. */
+    long getSeed() {
+        return seed;
+    }
+
+    /** The game's random source, to capture or restore its state alongside the board. */
+    GameRandom getRandom() {
+        return rand;
+    }
+
+    GameBoardArray getBoard() {
+        return board;
+    }
+
+    /** Live counts in SelfPlayBot.IDX_* order; do not modify. */
+    int[] getBonusCounts() {
+        return bonusCounts;
+    }
+
+    long getScore() {
+        return score;
+    }
+
+    /** Score including the chain that is still running. */
+    long getLiveScore() {
+        return (chainLength == 0) ? score : GameRules.safeAdd(score, chainScoreProduct);
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    /** Actions applied since the game started. */
+    int getMoveCount() {
+        return moveCount;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SplitMix64 generator for everything random in a game: opening cells, drop-ins
+ * and bonus awards. The whole state is one long, so it can be captured with
+ * getState and restored with setState, and split() derives an independent
+ * stream for a parallel game or worker. Not thread-safe; unlike java.util.Random
+ * it never touches an atomic, so each thread should own its instances.
+ *
+ * Extends Random only so it can be passed wherever a Random is expected.
+ * nextGaussian keeps a cached value outside the captured state; the game does
+ * not use it.
+ */
+final class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    /** SplitMix64 state increment, also handy for spacing out related seeds. */
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** Seeds instances created without one, so they differ even within one nanosecond. */
+    private static final AtomicLong SEEDER = new AtomicLong(mix(System.nanoTime()));
+
+    private long state;
+
+    /** A generator with a fresh seed, different from every other one in this process. */
+    GameRandom() {
+        this(mix(SEEDER.getAndAdd(GOLDEN_GAMMA)) ^ System.nanoTime());
+    }
+
+    GameRandom(long seed) {
+        super(0L);
+        state = seed;
+    }
+
+    /** Restarts the sequence; the same seed gives the same sequence. */
+    @Override
+    public void setSeed(long seed) {
+        // also called by Random's constructor, before this class is initialized
+        state = seed;
+    }
+
+    /** Everything needed to continue the sequence later with setState. */
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state;
+    }
+
+    /** A new generator whose sequence is independent of this one's; advances this one. */
+    GameRandom split() {
+        return new GameRandom(mix(nextLong()));
+    }
+
+    /**
+     * SplitMix64 finalizer: scrambles z into a well-mixed 64-bit value. Also
+     * derives seeds and hash keys wherever the game needs them.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Random;
+
+/** Scoring and progression formulas shared by the game and the search bots. */
+final class GameRules {
+
+    static final int MIN_COMBO_SIZE = GameBoardArray.MIN_COMBO_SIZE;
+    /** A merged group leaves one cell worth this much more than its members. */
+    static final int MERGE_VALUE_STEP = 2;
+    /** Cells dropped in after a move that did not merge. */
+    static final int DROP_INS_AFTER_MOTION = 3;
+
+    static final long BUY_COST_UNDO = 200L;
+    static final long BUY_COST_SWAP = 400L;
+    static final long BUY_COST_JUMP = 630L;
+    static final long BUY_COST_DISSOLVE = 300L;
+    static final long BUY_COST_DEL_LINE = 800L;
+    static final long BUY_COST_SHIFT_LINE = 565L;
+    static final long BUY_COST_COLOR_CLEAR = 1000L;
+    static final long BUY_COST_BOMB = 1500L;
+    /** Buy cost of each bonus, in the SelfPlayBot.IDX_* order. */
+    static final long[] BONUS_BUY_COSTS = {
+            BUY_COST_UNDO,
+            BUY_COST_DISSOLVE,
+            BUY_COST_SWAP,
+            BUY_COST_BOMB,
+            BUY_COST_SHIFT_LINE,
+            BUY_COST_JUMP,
+            BUY_COST_DEL_LINE,
+            BUY_COST_COLOR_CLEAR
+    };
+    /** Bonuses drawn each time the score passes the next bonus step. */
+    static final int BONUSES_PER_AWARD = 3;
+    private static final double BONUS_COUNT_DAMPING = 0.5d;
+
+    private static final long BASE_COMBO_SCORE = 4L;
+    private static final long BASE_LEVEL_SCORE = 25L;
+    private static final long BASE_BONUS_STEP = 75L;
+    private static final long BONUS_STEP_PER_LEVEL = 40L;
+    /** Merges of values above the spawn window score this many times more. */
+    private static final long HIGH_VALUE_COMBO_FACTOR = 4L;
+
+    private GameRules() {
+    }
+
+    static long calculateComboScore(int comboSize) {
+        if (comboSize < MIN_COMBO_SIZE) {
+            return 0L;
+        }
+        int shift = comboSize - MIN_COMBO_SIZE;
+        if (shift >= 60) {
+            return Long.MAX_VALUE;
+        }
+        return BASE_COMBO_SCORE << shift;
+    }
+
+    /** Score of merging comboSize cells of value at the given level, before chaining. */
+    static long calculateMergeScore(int comboSize, int value, int level) {
+        long comboScore = calculateComboScore(comboSize);
+        if (value > LevelProgression.getMaxSpawnIndex(level)) {
+            comboScore = safeMultiply(comboScore, HIGH_VALUE_COMBO_FACTOR);
+        }
+        return comboScore;
+    }
+
+    static long safeAdd(long a, long b) {
+        if (a > Long.MAX_VALUE - b) {
+            return Long.MAX_VALUE;
+        }
+        return a + b;
+    }
+
+    static long safeMultiply(long a, long b) {
+        if (a == 0L || b == 0L) {
+            return 0L;
+        }
+        if (a > Long.MAX_VALUE / b) {
+            return Long.MAX_VALUE;
+        }
+        return a * b;
+    }
+
+    static long getLevelThreshold(int nextLevel) {
+        return BASE_LEVEL_SCORE * nextLevel * (long) nextLevel;
+    }
+
+    /** Level reached with score, starting from level; levels never go down. */
+    static int getLevelForScore(long score, int level) {
+        while (score >= getLevelThreshold(level + 1)) {
+            level++;
+        }
+        return level;
+    }
+
+    static long getBonusStepForLevel(int currentLevel) {
+        return BASE_BONUS_STEP + BONUS_STEP_PER_LEVEL * Math.max(0, currentLevel - 1);
+    }
+
+    /** Cheaper bonuses and bonuses held fewer times are drawn more often. */
+    static double getBonusWeight(int index, int count) {
+        return 1.0d / ((double) BONUS_BUY_COSTS[index] * (1.0d + BONUS_COUNT_DAMPING * count));
+    }
+
+    /** Draws a bonus index with probability proportional to its weight for the given counts. */
+    static int pickWeightedBonus(int[] bonusCounts, Random rand) {
+        double totalWeight = 0.0d;
+        for (int i = 0; i < BONUS_BUY_COSTS.length; i++) {
+            totalWeight += getBonusWeight(i, bonusCounts[i]);
+        }
+
+        double roll = rand.nextDouble() * totalWeight;
+        double cumulativeWeight = 0.0d;
+        for (int i = 0; i < BONUS_BUY_COSTS.length; i++) {
+            cumulativeWeight += getBonusWeight(i, bonusCounts[i]);
+            if (roll <= cumulativeWeight) {
+                return i;
+            }
+        }
+        return BONUS_BUY_COSTS.length - 1;
+    }
+}
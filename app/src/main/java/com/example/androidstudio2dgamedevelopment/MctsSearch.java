@@ -0,0 +1,354 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo tree search over normal moves with root parallelism: every
+ * worker grows its own tree from the same root and the root visit counts are
+ * summed at the end, so workers never share mutable state.
+ *
+ * Trees are open-loop. A node stands for a move sequence, spawns are sampled
+ * afresh on every playout and children that are illegal after this playout's
+ * spawns are skipped. Nodes live in parallel primitive arrays that are kept
+ * across decisions. Playouts apply merges, chains, drop-ins and level pruning,
+ * and spend bonuses as dissolves when a drop-in would fill the board.
+ */
+public final class MctsSearch {
+
+    static final int DEFAULT_PLAYOUTS = 2000;
+    /** Children kept per node, most same-value neighbours first; the root keeps twice as many. */
+    private static final int MAX_CHILDREN = 24;
+    /** Visits a leaf needs before it gets children. */
+    private static final int EXPAND_VISITS = 2;
+    private static final int MAX_TREE_DEPTH = 6;
+    private static final int ROLLOUT_MOVES = 12;
+    /** Random legal moves sampled per rollout step; the one touching most same values is played. */
+    private static final int ROLLOUT_CANDIDATES = 6;
+    private static final int ROLLOUT_SAMPLE_TRIES = 64;
+    private static final double EXPLORATION = 0.7;
+    private static final double FREE_CELL_REWARD = 1.0;
+
+    private final int w, h, n;
+    private final FlatBoard rules;
+    private final Worker[] workers;
+    private final int[] rootBoard;
+    private final int[] rootLabel;
+    private int[] rootMoves;
+    private final int[] rootKeys = new int[2 * MAX_CHILDREN];
+    private final int[] rootChildren = new int[2 * MAX_CHILDREN];
+    private int rootCount;
+    private int playouts = DEFAULT_PLAYOUTS;
+
+    private int level;
+    private long score;
+    private int bonuses;
+
+    /** One worker per common-pool thread; see {@link #MctsSearch(int, int, int, GameRandom)}. */
+    public MctsSearch(int w, int h, GameRandom seeds) {
+        this(w, h, Math.max(1, ForkJoinPool.getCommonPoolParallelism()), seeds);
+    }
+
+    /**
+     * @param seeds every worker's random stream is a {@link GameRandom#split() split}
+     *              of it, so the same seeds and thread count repeat the same searches
+     */
+    public MctsSearch(int w, int h, int threads, GameRandom seeds) {
+        this.w = w;
+        this.h = h;
+        n = w * h;
+        rules     = new FlatBoard(w, h);
+        rootBoard = new int[n];
+        rootLabel = new int[n];
+        rootMoves = new int[Math.max(16, n)];
+        workers   = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(seeds.split());
+        }
+    }
+
+    /** Playouts per decision, split evenly over the workers. */
+    public void setPlayouts(int playouts) {
+        this.playouts = Math.max(1, playouts);
+    }
+
+    public int getPlayouts() {
+        return playouts;
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    /** Gives every worker a new random stream split from seeds, as the constructor does. */
+    public void reseed(GameRandom seeds) {
+        for (Worker worker : workers) {
+            worker.rand = seeds.split();
+        }
+    }
+
+    /**
+     * Most visited normal move on board[x][y].
+     *
+     * @param bonusCounts bonuses in hand; playouts treat each one as a dissolve
+     * @param fallback    heuristic move, always among the root children; may be null
+     * @return the chosen move, or fallback if there is no legal move
+     */
+    public SelfPlayBot.BotDecision search(int[][] board, int level, long score, int[] bonusCounts,
+                                          SelfPlayBot.BotDecision fallback) {
+        this.level = level;
+        this.score = score;
+        int held = 0;
+        for (int c : bonusCounts) held += c;
+        bonuses = held;
+
+        rules.load(board, rootBoard);
+        rootMoves = rules.generateMoves(rootBoard, rootLabel, rootMoves);
+        rootCount = rules.selectMoves(rootBoard, rootMoves, rules.moveCount(),
+                                      rootChildren, rootKeys, rootChildren.length);
+        if (rootCount == 0) {
+            return fallback;
+        }
+        if (fallback != null && fallback.type == SelfPlayBot.BotDecision.Type.NORMAL) {
+            int move = FlatBoard.encode(fallback.p1y * w + fallback.p1x, fallback.p2y * w + fallback.p2x);
+            if (indexOf(rootChildren, rootCount, move) < 0 && rules.canMove(rootBoard, rootLabel,
+                    FlatBoard.source(move), FlatBoard.target(move))) {
+                rootChildren[rootCount - 1] = move;
+            }
+        }
+
+        int share = (playouts + workers.length - 1) / workers.length;
+        for (Worker worker : workers) {
+            worker.reinitialize();
+            worker.playouts = share;
+        }
+        if (workers.length == 1) {
+            workers[0].compute();
+        } else {
+            ForkJoinTask.invokeAll(workers);
+        }
+
+        int best = -1;
+        long bestVisits = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < rootCount; i++) {
+            long visits = 0;
+            double value = 0.0;
+            for (Worker worker : workers) {
+                visits += worker.visits[1 + i];
+                value  += worker.value[1 + i];
+            }
+            double mean = (visits > 0) ? value / visits : Double.NEGATIVE_INFINITY;
+            if (visits > bestVisits || (visits == bestVisits && mean > bestValue)) {
+                best = rootChildren[i];
+                bestVisits = visits;
+                bestValue = mean;
+            }
+        }
+        int src = FlatBoard.source(best), dst = FlatBoard.target(best);
+        return SelfPlayBot.BotDecision.normal(src % w, src / w, dst % w, dst / w);
+    }
+
+    private static int indexOf(int[] list, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /** One independent tree with its own scratch boards and random stream. */
+    private final class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        GameRandom rand;
+        final FlatBoard rules = new FlatBoard(w, h);
+        final int[] board = new int[n];
+        final int[] label = new int[n];
+        int[] moves = new int[Math.max(16, n)];
+        final int[] selected = new int[MAX_CHILDREN];
+        final int[] keys = new int[MAX_CHILDREN];
+        final int[] path = new int[MAX_TREE_DEPTH + 1];
+        int playouts;
+
+        // Tree: node 0 is the root, children of a node are contiguous.
+        int size;
+        int[] firstChild = new int[1024];
+        int[] childCount = new int[1024]; // -1 until expanded
+        int[] move       = new int[1024];
+        int[] visits     = new int[1024];
+        double[] value   = new double[1024];
+        double maxReward;
+
+        // Playout state
+        long gained;
+        int playLevel;
+        int playBonuses;
+        long nextBonusAt;
+
+        Worker(GameRandom rand) {
+            this.rand = rand;
+        }
+
+        @Override
+        protected void compute() {
+            size = 1;
+            childCount[0] = -1;
+            visits[0] = 0;
+            value[0] = 0.0;
+            maxReward = 1.0;
+            int first = allocate(rootCount);
+            for (int i = 0; i < rootCount; i++) move[first + i] = rootChildren[i];
+            firstChild[0] = first;
+            childCount[0] = rootCount;
+
+            for (int i = 0; i < playouts; i++) {
+                playout();
+            }
+        }
+
+        private void playout() {
+            System.arraycopy(rootBoard, 0, board, 0, n);
+            gained = 0L;
+            playLevel = level;
+            playBonuses = bonuses;
+            nextBonusAt = GameRules.getBonusStepForLevel(level);
+
+            int node = 0, depth = 0;
+            path[0] = 0;
+            boolean over = false;
+            while (depth < MAX_TREE_DEPTH) {
+                if (childCount[node] < 0) {
+                    if (visits[node] < EXPAND_VISITS) break;
+                    expand(node);
+                } else {
+                    rules.labelRegions(board, label);
+                }
+                int child = selectChild(node);
+                if (child < 0) break;
+                path[++depth] = child;
+                node = child;
+                if (!play(move[child])) {
+                    over = true;
+                    break;
+                }
+            }
+            if (!over) rollout();
+
+            double reward = gained + FREE_CELL_REWARD * rules.countFree(board);
+            if (reward > maxReward) maxReward = reward;
+            for (int i = 0; i <= depth; i++) {
+                visits[path[i]]++;
+                value[path[i]] += reward;
+            }
+        }
+
+        private void expand(int node) {
+            moves = rules.generateMoves(board, label, moves);
+            int count = rules.selectMoves(board, moves, rules.moveCount(), selected, keys, MAX_CHILDREN);
+            int first = allocate(count);
+            System.arraycopy(selected, 0, move, first, count);
+            firstChild[node] = first;
+            childCount[node] = count;
+        }
+
+        /** UCB1 over the children that are legal on the current board; -1 if none is. */
+        private int selectChild(int node) {
+            int first = firstChild[node], end = first + childCount[node];
+            double logVisits = Math.log(visits[node] + 1);
+            int best = -1;
+            double bestUcb = Double.NEGATIVE_INFINITY;
+            for (int c = first; c < end; c++) {
+                int m = move[c];
+                if (!rules.canMove(board, label, FlatBoard.source(m), FlatBoard.target(m))) continue;
+                if (visits[c] == 0) return c;
+                double ucb = value[c] / (visits[c] * maxReward)
+                        + EXPLORATION * Math.sqrt(logVisits / visits[c]);
+                if (ucb > bestUcb) {
+                    bestUcb = ucb;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /** Greedy-random playout; stops early at game over or when no move is found. */
+        private void rollout() {
+            for (int step = 0; step < ROLLOUT_MOVES; step++) {
+                rules.labelRegions(board, label);
+                int best = -1, bestKey = -1, found = 0;
+                for (int t = 0; t < ROLLOUT_SAMPLE_TRIES && found < ROLLOUT_CANDIDATES; t++) {
+                    int src = rand.nextInt(n), dst = rand.nextInt(n);
+                    if (!rules.canMove(board, label, src, dst)) continue;
+                    found++;
+                    int key = rules.sameValueNeighbours(board, src, dst);
+                    if (key > bestKey) {
+                        bestKey = key;
+                        best = FlatBoard.encode(src, dst);
+                    }
+                }
+                if (best < 0 || !play(best)) return;
+            }
+        }
+
+        /** Applies move and its drop-ins; false on game over. */
+        private boolean play(int m) {
+            int src = FlatBoard.source(m), dst = FlatBoard.target(m);
+            board[dst] = board[src];
+            board[src] = -1;
+            addScore(rules.resolveChain(board, dst, playLevel));
+            int free = rules.countFree(board);
+            if (rules.lastChainLength() > 0 && free < n) return true;
+
+            if (playBonuses > 0 && free <= GameRules.DROP_INS_AFTER_MOTION && free < n) {
+                int cell;
+                do {
+                    cell = rand.nextInt(n);
+                } while (board[cell] < 0);
+                board[cell] = -1;
+                playBonuses--;
+            }
+            for (int k = 0; k < GameRules.DROP_INS_AFTER_MOTION; k++) {
+                free = rules.countFree(board);
+                if (free == 0) return false;
+                int cell = rules.nthFree(board, rand.nextInt(free));
+                int min = LevelProgression.getMinSpawnIndex(playLevel);
+                board[cell] = min + rand.nextInt(LevelProgression.getMaxSpawnIndex(playLevel) - min + 1);
+                addScore(rules.resolveChain(board, cell, playLevel));
+                if (rules.countFree(board) == 0) return false;
+            }
+            return true;
+        }
+
+        private void addScore(long points) {
+            if (points == 0L) return;
+            gained = GameRules.safeAdd(gained, points);
+            playLevel = rules.advanceLevel(board, GameRules.safeAdd(score, gained), playLevel);
+            while (gained >= nextBonusAt) {
+                playBonuses += GameRules.BONUSES_PER_AWARD;
+                nextBonusAt = GameRules.safeAdd(nextBonusAt, GameRules.getBonusStepForLevel(playLevel));
+            }
+        }
+
+        /** Reserves count consecutive unexpanded nodes and returns the first. */
+        private int allocate(int count) {
+            int first = size;
+            size += count;
+            if (size > move.length) {
+                int cap = Math.max(size, move.length * 2);
+                firstChild = Arrays.copyOf(firstChild, cap);
+                childCount = Arrays.copyOf(childCount, cap);
+                move       = Arrays.copyOf(move, cap);
+                visits     = Arrays.copyOf(visits, cap);
+                value      = Arrays.copyOf(value, cap);
+            }
+            for (int i = first; i < size; i++) {
+                childCount[i] = -1;
+                visits[i] = 0;
+                value[i] = 0.0;
+            }
+            return first;
+        }
+    }
+}
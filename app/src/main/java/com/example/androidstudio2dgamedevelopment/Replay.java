@@ -0,0 +1,264 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compact binary record of one game, written by a {@link Recorder} attached to
+ * the engine and played back by {@link #play} without any rendering.
+ *
+ * <pre>
+ * header   'R' 'P' version, varint width, varint height, seed as 8 bytes big-endian
+ * action   varint (type &lt;&lt; 1), varint first, varint second   ({@link GameAction} fields)
+ * spawn    varint 1, varint cell, varint value                 (a drop-in and its value)
+ * </pre>
+ *
+ * Varints are unsigned LEB128, so a move on a small board takes three bytes.
+ * Each action is followed by the spawns it caused. The seed and the actions
+ * alone determine the game; the spawns let a replay check that it really
+ * follows the recorded game. Secret-code cheats are not recorded; the game
+ * calls {@link Recorder#invalidate} instead, since a game that used them does
+ * not replay.
+ */
+final class Replay {
+
+    static final int VERSION = 1;
+
+    private static final int MAGIC_0 = 'R', MAGIC_1 = 'P';
+    private static final int TAG_SPAWN = 1;
+
+    private Replay() {
+    }
+
+    /** Appends the current game to a growing buffer; {@link #start} begins a new one. */
+    static final class Recorder {
+        private byte[] buf = new byte[256];
+        private int size;
+        private boolean valid = true;
+
+        void start(int width, int height, long seed) {
+            size = 0;
+            valid = true;
+            writeByte(MAGIC_0);
+            writeByte(MAGIC_1);
+            writeByte(VERSION);
+            writeVarint(width);
+            writeVarint(height);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (seed >>> shift));
+            }
+        }
+
+        void action(int action) {
+            writeVarint(GameAction.type(action) << 1);
+            writeVarint(GameAction.first(action));
+            writeVarint(GameAction.second(action));
+        }
+
+        void spawn(int cell, int value) {
+            writeVarint(TAG_SPAWN);
+            writeVarint(cell);
+            writeVarint(value);
+        }
+
+        /** Marks the current game as changed outside the recorded actions, so it will not replay. */
+        void invalidate() {
+            valid = false;
+        }
+
+        /** False once the current game was invalidated. */
+        boolean isValid() {
+            return valid;
+        }
+
+        /** Bytes written for the current game. */
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        /** Whether the first length bytes equal data's. */
+        boolean startsWith(byte[] data, int length) {
+            if (length > size) return false;
+            for (int i = 0; i < length; i++) {
+                if (buf[i] != data[i]) return false;
+            }
+            return true;
+        }
+
+        private void writeVarint(int v) {
+            while ((v & ~0x7F) != 0) {
+                writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            writeByte(v);
+        }
+
+        private void writeByte(int b) {
+            if (size == buf.length) {
+                buf = Arrays.copyOf(buf, size * 2);
+            }
+            buf[size++] = (byte) b;
+        }
+    }
+
+    /** Sequential reads over a replay; malformed input throws IllegalArgumentException. */
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        boolean hasMore() {
+            return pos < data.length;
+        }
+
+        int readByte() {
+            if (pos >= data.length) {
+                throw new IllegalArgumentException("replay truncated at byte " + pos);
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        int readVarint() {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("varint too long at byte " + pos);
+        }
+
+        long readLong() {
+            long v = 0L;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Writes data to target through a temporary file next to it, so readers
+     * never see a half-written replay. Creates the directory if needed.
+     */
+    static void save(byte[] data, File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("cannot replace " + target);
+        }
+    }
+
+    /**
+     * Plays data back through a fresh engine as fast as it goes.
+     *
+     * @param verify also record the replay and check that every action is legal
+     *               and every spawn matches the recorded one
+     * @return the engine, at the point where the recording ends
+     * @throws IllegalArgumentException if data is malformed or, with verify, the
+     *         game diverges from the recording
+     */
+    static GameEngine play(byte[] data, boolean verify) {
+        Reader in = new Reader(data);
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("not a replay");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported replay version " + version);
+        }
+        int width = in.readVarint(), height = in.readVarint();
+        long seed = in.readLong();
+        Recorder check = verify ? new Recorder() : null;
+        GameEngine engine = new GameEngine(width, height, seed);
+        if (check != null) {
+            engine.setRecorder(check);
+            engine.newGame(seed);
+        }
+        int actions = 0;
+        while (in.hasMore()) {
+            int recordStart = in.pos;
+            int tag = in.readVarint();
+            int first = in.readVarint(), second = in.readVarint();
+            if (tag == TAG_SPAWN) {
+                continue;
+            }
+            if (check != null && (check.size() != recordStart || !check.startsWith(data, recordStart))) {
+                throw new IllegalArgumentException("replay diverges before action " + actions
+                        + " (byte " + recordStart + ")");
+            }
+            int action = GameAction.encode(tag >>> 1, first, second);
+            if (!engine.apply(action) && verify) {
+                throw new IllegalArgumentException("action " + actions + " is not legal: "
+                        + GameAction.toString(action, width));
+            }
+            actions++;
+        }
+        if (check != null && (check.size() != data.length || !check.startsWith(data, data.length))) {
+            throw new IllegalArgumentException("replay diverges after the last action");
+        }
+        return engine;
+    }
+
+    /**
+     * Replays each file --repeat times (default 1) and prints its outcome and
+     * throughput. --verify=false skips the divergence checks. For example
+     * <pre>java -cp classes com.example.androidstudio2dgamedevelopment.Replay --repeat=100 game.rpl</pre>
+     */
+    public static void main(String[] args) throws IOException {
+        int repeat = 1;
+        boolean verify = true;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq), value = arg.substring(eq + 1);
+            switch (name) {
+                case "repeat": repeat = Integer.parseInt(value); break;
+                case "verify": verify = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("unknown option --" + name);
+            }
+        }
+        System.out.println("file\tbytes\tseed\tmoves\tscore\tlevel\tmoves/s");
+        for (String file : files) {
+            byte[] data = Files.readAllBytes(Paths.get(file));
+            GameEngine engine = null;
+            long start = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                engine = play(data, verify);
+            }
+            long elapsed = System.nanoTime() - start;
+            double perSecond = (elapsed <= 0) ? 0.0 : (double) engine.getMoveCount() * repeat * 1e9 / elapsed;
+            System.out.println(String.format(Locale.ROOT, "%s\t%d\t%d\t%d\t%d\t%d\t%.0f",
+                    file, data.length, engine.getSeed(), engine.getMoveCount(), engine.getScore(),
+                    engine.getLevel(), perSecond));
+        }
+    }
+}
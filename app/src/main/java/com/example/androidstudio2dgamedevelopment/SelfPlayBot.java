@@ -1,6 +1,8 @@
 package com.example.androidstudio2dgamedevelopment;
 
-import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Stateless strategy engine for the self-play / watch mode.
@@ -11,6 +13,10 @@ import java.util.ArrayDeque;
  *   3. Jump to an unreachable merge position
  *   4. Crowded-board cleanup (Color Clear, Delete Line, Bomb, Dissolve worst)
  *   5. Normal clustering toward same-value neighbours
+ *
+ * Boards of up to 64 cells are mirrored into a {@link BitBoard} so the
+ * reachability and group searches run on masks; larger boards use the
+ * array searches. All scratch memory lives in a reusable {@link Context}.
  */
 public class SelfPlayBot {
 
@@ -26,6 +32,12 @@ public class SelfPlayBot {
 
     private static final int MIN_COMBO_SIZE = 4;
 
+    /** Values at or above this are ignored by Color Clear. */
+    private static final int MAX_TRACKED_VALUE = 40;
+
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
     // -------------------------------------------------------------------------
     // Public decision type
     // -------------------------------------------------------------------------
@@ -69,119 +81,636 @@ public class SelfPlayBot {
         }
     }
 
+    // -------------------------------------------------------------------------
+    // Reusable scratch context
+    // -------------------------------------------------------------------------
+
+    /**
+     * Scratch memory for deciding on boards of one size: a board copy, the
+     * bitboard, empty-region labels and a generation-stamped visited array with
+     * an int queue for flood fills. Create one per board and reuse it; after the
+     * first decision, computeDecision allocates only the returned BotDecision.
+     * Not thread-safe.
+     */
+    public static final class Context {
+        final int w, h;
+        /** Scratch copy as board[x][y]; searches modify it temporarily and restore it. */
+        final int[][] board;
+        /** Bitboard mirror, or null above BitBoard.MAX_CELLS. */
+        final BitBoard bits;
+        /** Empty-region labels for the array path; filled once per decision. */
+        final int[][] regions;
+        int freeCells;
+
+        // A cell y * w + x is visited in the current fill iff stamp[cell] == currentStamp.
+        private final int[] stamp;
+        private int currentStamp;
+        /** Cells reached by the last flood fill; a group fill leaves its members here. */
+        private final int[] queue;
+
+        private final int[] valueCounts = new int[MAX_TRACKED_VALUE];
+        private final int[] firstCell   = new int[MAX_TRACKED_VALUE];
+        private final Candidate best    = new Candidate();
+
+        // Same-value groups for the array path, filled once per decision by
+        // labelGroups() and shared read-only with parallel workers: each occupied
+        // cell's group id, each group's size and (member, neighbour holding
+        // value + 2) pair count, and per value v the empty cells touching v in
+        // row-major order, frontier[frontierStart[v] .. frontierStart[v + 1]).
+        private final int[] groups;
+        private int[] groupSize  = new int[16];
+        private int[] groupPairs = new int[16];
+        private int[] frontier;
+        private int[] frontierStart = new int[MAX_TRACKED_VALUE + 2];
+        // Manhattan distance transforms per value, filled by computeDistances() and
+        // shared with parallel workers: for every cell the nearest cell holding v
+        // (nearestSeed[v]) at distance nearestDist[v], and the distance to the
+        // nearest v cell other than that one (secondDist[v]).
+        private int[][] nearestDist  = new int[MAX_TRACKED_VALUE][];
+        private int[][] nearestSeed  = new int[MAX_TRACKED_VALUE][];
+        private int[][] secondDist   = new int[MAX_TRACKED_VALUE][];
+        private int[] bfsCell, bfsSeed;
+        /** Piece of the lifted source's group each cell falls into; see splitGroup. */
+        private final int[] piece;
+        private final int[] pieceSize  = new int[5];
+        private final int[] piecePairs = new int[5];
+        /** Bitboard path: the connected pieces of the source's value with the source lifted. */
+        private final long[] pieceMasks;
+
+        /** Lookahead for normal moves; created on first use, skipped while the budget is 0. */
+        private ExpectimaxSearch search;
+        private long searchBudgetNanos;
+        /** Tree search used instead of the expectimax while playouts are set. */
+        private MctsSearch mcts;
+        private int mctsPlayouts;
+        /** Source of the tree search's random streams; a fresh generator unless set. */
+        private GameRandom random;
+        private int level = 1;
+        private long score;
+        BotParams params = BotParams.DEFAULT;
+
+        public Context(int w, int h) {
+            this.w = w;
+            this.h = h;
+            board   = new int[w][h];
+            bits    = BitBoard.fits(w, h) ? new BitBoard(w, h) : null;
+            regions = new int[w][h];
+            stamp   = new int[w * h];
+            queue   = new int[w * h];
+            groups   = new int[w * h];
+            frontier = new int[4 * w * h];
+            piece    = new int[w * h];
+            pieceMasks = (bits != null) ? new long[BitBoard.MAX_CELLS] : null;
+        }
+
+        /** Worker copy for a parallel scan: own board and fill scratch, shared read-only labels. */
+        private Context(Context parent) {
+            w = parent.w;
+            h = parent.h;
+            board = new int[w][];
+            for (int x = 0; x < w; x++) board[x] = parent.board[x].clone();
+            bits      = parent.bits;
+            regions   = parent.regions;
+            freeCells = parent.freeCells;
+            stamp = new int[w * h];
+            queue = new int[w * h];
+            groups        = parent.groups;
+            groupSize     = parent.groupSize;
+            groupPairs    = parent.groupPairs;
+            frontier      = parent.frontier;
+            frontierStart = parent.frontierStart;
+            nearestDist   = parent.nearestDist;
+            nearestSeed   = parent.nearestSeed;
+            secondDist    = parent.secondDist;
+            piece = new int[w * h];
+            pieceMasks = (bits != null) ? new long[BitBoard.MAX_CELLS] : null;
+            params = parent.params;
+        }
+
+        /** Copies the live board; replaces GameBoard's per-decision snapshot. */
+        public void load(GameBoardArray src) {
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    board[x][y] = src.get(x, y);
+            freeCells = src.getNumFreeCells();
+            if (bits != null) bits.load(board);
+        }
+
+        /** Level and score the lookahead starts from; they set spawn ranges and level-ups. */
+        public void setProgress(int level, long score) {
+            this.level = level;
+            this.score = score;
+        }
+
+        /** Time the lookahead may spend per normal move; 0 keeps the heuristic move. */
+        public void setSearchBudgetNanos(long budgetNanos) {
+            searchBudgetNanos = budgetNanos;
+        }
+
+        /** Heuristic thresholds and weights; BotParams.DEFAULT unless tuning. */
+        void setParams(BotParams params) {
+            this.params = params;
+        }
+
+        /** Playouts per normal move for the MCTS strategy; 0 switches back to the expectimax. */
+        public void setMctsPlayouts(int playouts) {
+            mctsPlayouts = playouts;
+        }
+
+        /** Tree search for the MCTS strategy; one worker per common-pool thread unless set. */
+        void setMctsSearch(MctsSearch mcts) {
+            this.mcts = mcts;
+        }
+
+        /**
+         * Generator the tree search splits its random streams from, now if it
+         * exists and otherwise once it is created; the same generator state
+         * repeats the same decisions.
+         */
+        void setRandom(GameRandom random) {
+            this.random = random;
+            if (mcts != null) mcts.reseed(random);
+        }
+
+        /** Copies a board given as board[x][y], -1 meaning empty. */
+        public void load(int[][] src) {
+            int free = 0;
+            for (int x = 0; x < w; x++) {
+                System.arraycopy(src[x], 0, board[x], 0, h);
+                for (int y = 0; y < h; y++) if (src[x][y] < 0) free++;
+            }
+            freeCells = free;
+            if (bits != null) bits.load(board);
+        }
+
+        private void newStamp() {
+            if (++currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                currentStamp = 1;
+            }
+        }
+
+        private boolean visited(int x, int y) {
+            return stamp[y * w + x] == currentStamp;
+        }
+
+        /** Size of the group of val at (x, y); its cells are left in queue[0 .. size). */
+        int countGroup(int x, int y, int val) {
+            newStamp();
+            return fillGroup(x, y, val);
+        }
+
+        /** Iterative flood fill of val from (x, y) within the current stamp. */
+        private int fillGroup(int x, int y, int val) {
+            if (board[x][y] != val || visited(x, y)) return 0;
+            int head = 0, tail = 0;
+            stamp[y * w + x] = currentStamp;
+            queue[tail++] = y * w + x;
+            while (head < tail) {
+                int cx = queue[head] % w, cy = queue[head++] / w;
+                for (int d = 0; d < 4; d++) {
+                    int nx = cx + DX[d], ny = cy + DY[d];
+                    if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                    if (board[nx][ny] != val || visited(nx, ny)) continue;
+                    stamp[ny * w + nx] = currentStamp;
+                    queue[tail++] = ny * w + nx;
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Labels each region of connected empty cells with a number from 1; occupied
+         * cells get 0. A cell at (sx,sy) can move to the empty cell (tx,ty) iff one of
+         * its neighbours carries the target's label, so a single labelling answers
+         * reachability for every source.
+         */
+        void labelEmptyRegions() {
+            for (int[] col : regions) Arrays.fill(col, 0);
+            int next = 0;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    if (board[x][y] >= 0 || regions[x][y] != 0) continue;
+                    int label = ++next;
+                    int head = 0, tail = 0;
+                    regions[x][y] = label;
+                    queue[tail++] = y * w + x;
+                    while (head < tail) {
+                        int cx = queue[head] % w, cy = queue[head++] / w;
+                        for (int d = 0; d < 4; d++) {
+                            int nx = cx + DX[d], ny = cy + DY[d];
+                            if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                            if (board[nx][ny] >= 0 || regions[nx][ny] != 0) continue;
+                            regions[nx][ny] = label;
+                            queue[tail++] = ny * w + nx;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Number of orthogonal neighbours of (x, y) holding val. */
+        int countNeighbours(int x, int y, int val) {
+            int count = 0;
+            if (x > 0     && board[x - 1][y] == val) count++;
+            if (x < w - 1 && board[x + 1][y] == val) count++;
+            if (y > 0     && board[x][y - 1] == val) count++;
+            if (y < h - 1 && board[x][y + 1] == val) count++;
+            return count;
+        }
+
+        /** Fills groups, groupSize, groupPairs and the per-value frontier lists. */
+        void labelGroups() {
+            Arrays.fill(groups, -1);
+            int count = 0, maxVal = -1;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int val = board[x][y];
+                    if (val < 0 || groups[y * w + x] >= 0) continue;
+                    if (count == groupSize.length) {
+                        groupSize  = Arrays.copyOf(groupSize, count * 2);
+                        groupPairs = Arrays.copyOf(groupPairs, count * 2);
+                    }
+                    int size = countGroup(x, y, val), pairs = 0;
+                    for (int i = 0; i < size; i++) {
+                        int c = queue[i];
+                        groups[c] = count;
+                        pairs += countNeighbours(c % w, c / w, val + 2);
+                    }
+                    groupSize[count]  = size;
+                    groupPairs[count] = pairs;
+                    count++;
+                    maxVal = Math.max(maxVal, val);
+                }
+            }
+
+            // Counting sort of (value, empty cell) pairs keeps each list row-major.
+            if (frontierStart.length < maxVal + 3) frontierStart = new int[maxVal + 3];
+            int[] start = frontierStart;
+            Arrays.fill(start, 0);
+            for (int pass = 0; pass < 2; pass++) {
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        if (board[x][y] >= 0) continue;
+                        int a = (x > 0)     ? board[x - 1][y] : -1;
+                        int b = (x < w - 1) ? board[x + 1][y] : -1;
+                        int c = (y > 0)     ? board[x][y - 1] : -1;
+                        int d = (y < h - 1) ? board[x][y + 1] : -1;
+                        if (a >= 0) addFrontier(pass, a, x, y);
+                        if (b >= 0 && b != a) addFrontier(pass, b, x, y);
+                        if (c >= 0 && c != a && c != b) addFrontier(pass, c, x, y);
+                        if (d >= 0 && d != a && d != b && d != c) addFrontier(pass, d, x, y);
+                    }
+                }
+                if (pass == 0) {
+                    for (int v = 1; v < start.length; v++) start[v] += start[v - 1];
+                }
+            }
+            // the fill pass advanced start[v + 1] to the end of v's list; shift back
+            for (int v = start.length - 1; v > 0; v--) start[v] = start[v - 1];
+            start[0] = 0;
+        }
+
+        private void addFrontier(int pass, int val, int x, int y) {
+            if (pass == 0) {
+                frontierStart[val + 1]++;
+            } else {
+                frontier[frontierStart[val]++] = y * w + x;
+            }
+        }
+
+        /**
+         * Splits the group of the source at (sx, sy) into the pieces left after
+         * lifting the source: piece[cell] is 1..4 for the other members, with
+         * sizes and higher-neighbour pairs in pieceSize and piecePairs.
+         */
+        private void splitGroup(int sx, int sy, int val) {
+            newStamp();
+            stamp[sy * w + sx] = currentStamp;
+            int pieces = 0;
+            for (int d = 0; d < 4; d++) {
+                int nx = sx + DX[d], ny = sy + DY[d];
+                if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                int size = fillGroup(nx, ny, val);
+                if (size == 0) continue;
+                pieces++;
+                int pairs = 0;
+                for (int i = 0; i < size; i++) {
+                    int c = queue[i];
+                    piece[c] = pieces;
+                    pairs += countNeighbours(c % w, c / w, val + 2);
+                }
+                pieceSize[pieces]  = size;
+                piecePairs[pieces] = pairs;
+            }
+        }
+
+        /** Builds the distance transform of every value on the board. */
+        void computeDistances() {
+            int n = w * h, maxVal = -1;
+            for (int x = 0; x < w; x++)
+                for (int y = 0; y < h; y++)
+                    maxVal = Math.max(maxVal, board[x][y]);
+            if (nearestDist.length <= maxVal) {
+                nearestDist = Arrays.copyOf(nearestDist, maxVal + 1);
+                nearestSeed = Arrays.copyOf(nearestSeed, maxVal + 1);
+                secondDist  = Arrays.copyOf(secondDist, maxVal + 1);
+            }
+            if (bfsCell == null) {
+                bfsCell = new int[2 * n];
+                bfsSeed = new int[2 * n];
+            }
+            for (int v = 0; v <= maxVal; v++) {
+                if (nearestDist[v] == null) {
+                    nearestDist[v] = new int[n];
+                    nearestSeed[v] = new int[n];
+                    secondDist[v]  = new int[n];
+                }
+                distanceTransform(v, nearestDist[v], nearestSeed[v], secondDist[v]);
+            }
+        }
+
+        /**
+         * Multi-source BFS from every cell holding val over the whole grid, so
+         * distances are Manhattan and ignore other cells, as in play. Each cell
+         * accepts the first two distinct seeds that reach it; in BFS order those
+         * are its nearest and second-nearest val cells.
+         */
+        private void distanceTransform(int val, int[] dist1, int[] seed1, int[] dist2) {
+            Arrays.fill(dist1, Integer.MAX_VALUE);
+            Arrays.fill(seed1, -1);
+            Arrays.fill(dist2, Integer.MAX_VALUE);
+            int head = 0, tail = 0;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    if (board[x][y] != val) continue;
+                    int c = y * w + x;
+                    dist1[c] = 0;
+                    seed1[c] = c;
+                    bfsCell[tail] = c;
+                    bfsSeed[tail++] = c;
+                }
+            }
+            while (head < tail) {
+                int c = bfsCell[head], seed = bfsSeed[head++];
+                int next = ((seed1[c] == seed) ? dist1[c] : dist2[c]) + 1;
+                int cx = c % w, cy = c / w;
+                for (int d = 0; d < 4; d++) {
+                    int nx = cx + DX[d], ny = cy + DY[d];
+                    if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                    int nc = ny * w + nx;
+                    if (seed1[nc] < 0) {
+                        seed1[nc] = seed;
+                        dist1[nc] = next;
+                    } else if (seed1[nc] != seed && dist2[nc] == Integer.MAX_VALUE) {
+                        dist2[nc] = next;
+                    } else {
+                        continue;
+                    }
+                    bfsCell[tail] = nc;
+                    bfsSeed[tail++] = seed;
+                }
+            }
+        }
+
+        /** Manhattan distance from cell to the nearest val cell other than exclude; O(1). */
+        int nearestOther(int val, int cell, int exclude) {
+            return (nearestSeed[val][cell] != exclude) ? nearestDist[val][cell] : secondDist[val][cell];
+        }
+
+        boolean canReach(int sx, int sy, int tx, int ty) {
+            int label = regions[tx][ty];
+            if (label == 0) return false;
+            return (sx > 0     && regions[sx - 1][sy] == label) || (sx < w - 1 && regions[sx + 1][sy] == label)
+                || (sy > 0     && regions[sx][sy - 1] == label) || (sy < h - 1 && regions[sx][sy + 1] == label);
+        }
+    }
+
     // -------------------------------------------------------------------------
     // Main entry point
     // -------------------------------------------------------------------------
 
     /**
-     * @param board       mutable scratch copy of the board (restored on return)
+     * Convenience overload that copies board into a fresh context.
+     *
+     * @param board       board[x][y]; left unchanged
      * @param bonusCounts counts for each bonus in BONUS_BUY_COSTS order
      * @param freeCells   number of empty cells right now
      */
     public static BotDecision computeDecision(int[][] board, int w, int h,
                                               int[] bonusCounts, int freeCells) {
-        float freeRatio = (float) freeCells / (w * h);
+        Context ctx = new Context(w, h);
+        ctx.load(board);
+        ctx.freeCells = freeCells;
+        return computeDecision(ctx, bonusCounts);
+    }
+
+    /**
+     * @param ctx         context loaded with the current board
+     * @param bonusCounts counts for each bonus in BONUS_BUY_COSTS order
+     */
+    public static BotDecision computeDecision(Context ctx, int[] bonusCounts) {
+        int w = ctx.w, h = ctx.h;
+        BitBoard bits = ctx.bits;
+        if (bits == null) {
+            ctx.labelEmptyRegions();
+            ctx.labelGroups();
+        }
+        BotParams params = ctx.params;
+        float freeRatio = (float) ctx.freeCells / (w * h);
 
         // 1. Direct merge
-        BotDecision d = findBestMergeDecision(board, w, h);
-        if (d != null) return d;
+        BotDecision d = (bits != null) ? findBestMergeDecisionBits(ctx) : findBestMergeDecision(ctx);
+        if (d != null) return lookahead(ctx, d, bonusCounts);
 
         // 2. Dissolve to enable a merge
         if (bonusCounts[IDX_DISSOLVE] > 0) {
-            d = findDissolveToEnableMerge(board, w, h);
+            d = (bits != null) ? findDissolveToEnableMergeBits(ctx) : findDissolveToEnableMerge(ctx);
             if (d != null) return d;
         }
 
         // 3. Jump to an unreachable merge position
         if (bonusCounts[IDX_JUMP] > 0) {
-            d = findJumpToEnableMerge(board, w, h);
+            d = (bits != null) ? findJumpToEnableMergeBits(ctx) : findJumpToEnableMerge(ctx);
             if (d != null) return d;
         }
 
         // 4. Crowded-board cleanup
-        if (freeRatio < 0.42f) {
+        if (freeRatio < params.crowdedRatio) {
             if (bonusCounts[IDX_COLOR_CLEAR] > 0) {
-                d = findColorClearTarget(board, w, h, 4);
+                d = findColorClearTarget(ctx, params.colorClearMinCells);
                 if (d != null) return d;
             }
-            if (freeRatio < 0.30f) {
+            if (freeRatio < params.veryCrowdedRatio) {
                 if (bonusCounts[IDX_DEL_LINE] > 0) {
-                    d = findDelLineTarget(board, w, h, 3);
+                    d = findDelLineTarget(ctx.board, w, h, params.delLineMinFilled);
                     if (d != null) return d;
                 }
                 if (bonusCounts[IDX_BOMB] > 0) {
-                    d = findBombTarget(board, w, h, 5);
+                    d = findBombTarget(ctx.board, w, h, params.bombMinCells);
                     if (d != null) return d;
                 }
             }
-            if (freeRatio < 0.25f && bonusCounts[IDX_DISSOLVE] > 0) {
-                d = findDissolveWorstCell(board, w, h);
+            if (freeRatio < params.dissolveRatio && bonusCounts[IDX_DISSOLVE] > 0) {
+                d = findDissolveWorstCell(ctx);
                 if (d != null) return d;
             }
         }
 
         // 5. Normal clustering
-        return findClusterMove(board, w, h);
+        return lookahead(ctx, findClusterMove(ctx), bonusCounts);
+    }
+
+    /**
+     * Computes one decision for engine's current state and applies it at once,
+     * with every merge, chain and drop-in resolved: self-play without animation.
+     *
+     * @return false if the bot found nothing to do or the engine rejected the decision
+     */
+    static boolean playTurn(Context ctx, GameEngine engine) {
+        ctx.load(engine.getBoard());
+        ctx.setProgress(engine.getLevel(), engine.getScore());
+        return engine.apply(computeDecision(ctx, engine.getBonusCounts()));
+    }
+
+    /** Lets MCTS or the expectimax search overrule a heuristic normal move when configured. */
+    private static BotDecision lookahead(Context ctx, BotDecision heuristic, int[] bonusCounts) {
+        if (ctx.mctsPlayouts > 0) {
+            if (ctx.mcts == null) {
+                ctx.mcts = new MctsSearch(ctx.w, ctx.h, (ctx.random != null) ? ctx.random : new GameRandom());
+            }
+            ctx.mcts.setPlayouts(ctx.mctsPlayouts);
+            return ctx.mcts.search(ctx.board, ctx.level, ctx.score, bonusCounts, heuristic);
+        }
+        if (ctx.searchBudgetNanos <= 0) return heuristic;
+        if (ctx.search == null) ctx.search = new ExpectimaxSearch(ctx.w, ctx.h);
+        return ctx.search.search(ctx.board, ctx.level, ctx.score, bonusCounts, ctx.searchBudgetNanos, heuristic);
     }
 
     // -------------------------------------------------------------------------
     // 1. Best direct merge (largest group, chain lookahead)
     // -------------------------------------------------------------------------
 
-    private static BotDecision findBestMergeDecision(int[][] board, int w, int h) {
-        BotDecision best = null;
-        int bestScore = -1;
-
-        for (int sy = 0; sy < h; sy++) {
-            for (int sx = 0; sx < w; sx++) {
-                int val = board[sx][sy];
-                if (val < 0) continue;
+    /**
+     * Placing val on an empty target joins it with every distinct val group around
+     * it, so its group size is one plus their sizes. Only empty cells touching val
+     * (the frontier) can complete a merge. If the source belongs to a larger group,
+     * that group is split once per source to see what lifting the source leaves.
+     */
+    private static final SourceEvaluator MERGE = (ctx, sx, sy, best) -> {
+        int[][] b = ctx.board;
+        int val = b[sx][sy];
+        if (val < 0) return;
+        int w = ctx.w, h = ctx.h, src = sy * w + sx;
+        int srcGroup = ctx.groups[src];
+        if (ctx.groupSize[srcGroup] > 1) ctx.splitGroup(sx, sy, val);
+
+        int end = ctx.frontierStart[val + 1];
+        for (int i = ctx.frontierStart[val]; i < end; i++) {
+            int t = ctx.frontier[i];
+            int tx = t % w, ty = t / w;
+            if (!ctx.canReach(sx, sy, tx, ty)) continue;
+
+            int grp = 1, pairs = ctx.countNeighbours(tx, ty, val + 2);
+            int seen0 = 0, seen1 = 0, seen2 = 0; // ids already added; piece ids are negative
+            for (int d = 0; d < 4; d++) {
+                int nx = tx + DX[d], ny = ty + DY[d];
+                if (nx < 0 || nx >= w || ny < 0 || ny >= h || b[nx][ny] != val) continue;
+                int c = ny * w + nx;
+                if (c == src) continue;
+                int g = ctx.groups[c];
+                int id = (g == srcGroup) ? -ctx.piece[c] : g + 1;
+                if (id == seen0 || id == seen1 || id == seen2) continue;
+                if (seen0 == 0) seen0 = id; else if (seen1 == 0) seen1 = id; else seen2 = id;
+                if (id < 0) {
+                    grp   += ctx.pieceSize[-id];
+                    pairs += ctx.piecePairs[-id];
+                } else {
+                    grp   += ctx.groupSize[g];
+                    pairs += ctx.groupPairs[g];
+                }
+            }
 
-                // Keep source empty during simulation so it isn't counted in the group
-                board[sx][sy] = -1;
-                boolean[][] reach = bfsEmpty(board, w, h, sx, sy);
+            if (grp >= MIN_COMBO_SIZE) {
+                int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1) + chainLookahead(ctx.params, pairs);
+                if (score > best.score) best.set(score, BotDecision.Type.NORMAL, sx, sy, tx, ty);
+            }
+        }
+    };
 
-                for (int ty = 0; ty < h; ty++) {
-                    for (int tx = 0; tx < w; tx++) {
-                        if (tx == sx && ty == sy) continue;
-                        if (!reach[tx][ty]) continue;
+    private static BotDecision findBestMergeDecision(Context ctx) {
+        return scanSources(ctx, -1, MERGE).toDecision();
+    }
 
-                        board[tx][ty] = val;
-                        int grp = countGroup(board, w, h, tx, ty, val);
-                        int chain = 0;
-                        if (grp >= MIN_COMBO_SIZE) chain = chainLookahead(board, w, h, tx, ty, val, grp);
-                        board[tx][ty] = -1;
+    /**
+     * Bitboard form of {@link #findBestMergeDecision(Context)}; same scan order and
+     * scores. As there, only reachable targets on the frontier of the source's
+     * value are tried, and the group a target completes is the union of the
+     * pieces around it: val is split into pieces once per source, not flood
+     * filled once per target.
+     */
+    private static BotDecision findBestMergeDecisionBits(Context ctx) {
+        int w = ctx.w;
+        BitBoard bits = ctx.bits;
+        long[] pieces = ctx.pieceMasks;
+        Candidate best = ctx.best.reset(-1);
+
+        for (long sources = bits.occupiedMask(); sources != 0; sources &= sources - 1) {
+            long src = Long.lowestOneBit(sources);
+            int sx = BitBoard.bitX(src, w), sy = BitBoard.bitY(src, w);
+            int val = ctx.board[sx][sy];
+            long same = bits.valueMask(val) & ~src;
+            long frontier = bits.neighbours(same) & bits.emptyMask();
+            if (Long.bitCount(same) < MIN_COMBO_SIZE - 1 || frontier == 0) continue;
+            long targets = bits.reachableFrom(sx, sy) & frontier;
+            if (targets == 0) continue;
+            long higher = bits.valueMask(val + 2);
+
+            int count = 0;
+            for (long rest = same; rest != 0; ) {
+                long piece = bits.floodFill(Long.lowestOneBit(rest), same);
+                pieces[count++] = piece;
+                rest &= ~piece;
+            }
 
-                        if (grp >= MIN_COMBO_SIZE) {
-                            int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1) + chain;
-                            if (score > bestScore) { bestScore = score; best = BotDecision.normal(sx, sy, tx, ty); }
-                        }
-                    }
+            for (; targets != 0; targets &= targets - 1) {
+                long dst = Long.lowestOneBit(targets);
+                long around = bits.neighbours(dst);
+                long group = dst;
+                for (int i = 0; i < count; i++) {
+                    if ((pieces[i] & around) != 0) group |= pieces[i];
                 }
+                int grp = Long.bitCount(group);
+                if (grp < MIN_COMBO_SIZE) continue;
 
-                board[sx][sy] = val; // restore after all targets checked
+                int chain = chainLookahead(ctx.params, bits.countAdjacentPairs(group, higher));
+                int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1) + chain;
+                if (score > best.score) {
+                    best.set(score, BotDecision.Type.NORMAL, sx, sy, BitBoard.bitX(dst, w), BitBoard.bitY(dst, w));
+                }
             }
         }
-        return best;
+        return best.toDecision();
     }
 
     // -------------------------------------------------------------------------
     // 2. Dissolve to enable a merge
     // -------------------------------------------------------------------------
 
-    private static BotDecision findDissolveToEnableMerge(int[][] board, int w, int h) {
+    private static BotDecision findDissolveToEnableMerge(Context ctx) {
+        int[][] board = ctx.board;
         BotDecision best = null;
         int bestScore = 0;
 
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
+        for (int y = 0; y < ctx.h; y++) {
+            for (int x = 0; x < ctx.w; x++) {
                 int val = board[x][y];
                 if (val < 0) continue;
                 // Don't dissolve a cell that's already part of a merge group
-                if (countGroup(board, w, h, x, y, val) >= MIN_COMBO_SIZE) continue;
+                if (ctx.countGroup(x, y, val) >= MIN_COMBO_SIZE) continue;
 
                 board[x][y] = -1;
-                int score = maxGroupAroundCell(board, w, h, x, y);
+                int score = maxGroupAroundCell(ctx, x, y);
                 board[x][y] = val;
 
                 if (score >= MIN_COMBO_SIZE && score > bestScore) {
@@ -193,16 +722,42 @@ public class SelfPlayBot {
         return best;
     }
 
+    private static BotDecision findDissolveToEnableMergeBits(Context ctx) {
+        int w = ctx.w;
+        BitBoard bits = ctx.bits;
+        BotDecision best = null;
+        int bestScore = 0;
+
+        for (long cells = bits.occupiedMask(); cells != 0; cells &= cells - 1) {
+            long cell = Long.lowestOneBit(cells);
+            int x = BitBoard.bitX(cell, w), y = BitBoard.bitY(cell, w);
+            int val = ctx.board[x][y];
+            if (Long.bitCount(bits.floodFill(cell, bits.valueMask(val))) >= MIN_COMBO_SIZE) continue;
+
+            int score = 0;
+            for (long nbs = bits.neighbours(cell) & bits.occupiedMask(); nbs != 0; nbs &= nbs - 1) {
+                long nb = Long.lowestOneBit(nbs);
+                int nbVal = ctx.board[BitBoard.bitX(nb, w)][BitBoard.bitY(nb, w)];
+                score = Math.max(score, Long.bitCount(bits.floodFill(nb, bits.valueMask(nbVal) & ~cell)));
+            }
+
+            if (score >= MIN_COMBO_SIZE && score > bestScore) {
+                bestScore = score;
+                best = BotDecision.dissolve(x, y);
+            }
+        }
+        return best;
+    }
+
     /** Max group size among neighbours after a cell at (rx,ry) was cleared. */
-    private static int maxGroupAroundCell(int[][] board, int w, int h, int rx, int ry) {
-        boolean[][] vis = new boolean[w][h];
+    private static int maxGroupAroundCell(Context ctx, int rx, int ry) {
+        ctx.newStamp();
         int max = 0;
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nx = rx + d[0], ny = ry + d[1];
-            if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
-            if (board[nx][ny] < 0 || vis[nx][ny]) continue;
-            int g = countGroupMark(board, w, h, nx, ny, board[nx][ny], vis);
+        for (int d = 0; d < 4; d++) {
+            int nx = rx + DX[d], ny = ry + DY[d];
+            if (nx < 0 || nx >= ctx.w || ny < 0 || ny >= ctx.h) continue;
+            if (ctx.board[nx][ny] < 0) continue;
+            int g = ctx.fillGroup(nx, ny, ctx.board[nx][ny]);
             if (g > max) max = g;
         }
         return max;
@@ -212,67 +767,93 @@ public class SelfPlayBot {
     // 3. Jump to an otherwise unreachable merge position
     // -------------------------------------------------------------------------
 
-    private static BotDecision findJumpToEnableMerge(int[][] board, int w, int h) {
-        BotDecision best = null;
-        int bestScore = 0;
+    private static final SourceEvaluator JUMP = (ctx, sx, sy, best) -> {
+        int[][] b = ctx.board;
+        int val = b[sx][sy];
+        if (val < 0) return;
 
-        for (int sy = 0; sy < h; sy++) {
-            for (int sx = 0; sx < w; sx++) {
-                int val = board[sx][sy];
-                if (val < 0) continue;
+        b[sx][sy] = -1; // keep empty during simulation
 
-                board[sx][sy] = -1; // keep empty during simulation
-                boolean[][] reach = bfsEmpty(board, w, h, sx, sy);
+        for (int ty = 0; ty < ctx.h; ty++) {
+            for (int tx = 0; tx < ctx.w; tx++) {
+                if (tx == sx && ty == sy) continue;
+                if (b[tx][ty] != -1) continue;
+                if (ctx.canReach(sx, sy, tx, ty)) continue; // reachable normally, skip
 
-                for (int ty = 0; ty < h; ty++) {
-                    for (int tx = 0; tx < w; tx++) {
-                        if (tx == sx && ty == sy) continue;
-                        if (board[tx][ty] != -1) continue;
-                        if (reach[tx][ty]) continue; // reachable normally, skip
+                b[tx][ty] = val;
+                int grp = ctx.countGroup(tx, ty, val);
+                b[tx][ty] = -1;
 
-                        board[tx][ty] = val;
-                        int grp = countGroup(board, w, h, tx, ty, val);
-                        board[tx][ty] = -1;
+                if (grp >= MIN_COMBO_SIZE) {
+                    int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1);
+                    if (score > best.score) best.set(score, BotDecision.Type.JUMP, sx, sy, tx, ty);
+                }
+            }
+        }
 
-                        if (grp >= MIN_COMBO_SIZE) {
-                            int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1);
-                            if (score > bestScore) { bestScore = score; best = BotDecision.jump(sx, sy, tx, ty); }
-                        }
+        b[sx][sy] = val; // restore after all targets checked
+    };
+
+    private static BotDecision findJumpToEnableMerge(Context ctx) {
+        return scanSources(ctx, 0, JUMP).toDecision();
+    }
+
+    private static BotDecision findJumpToEnableMergeBits(Context ctx) {
+        int w = ctx.w;
+        BitBoard bits = ctx.bits;
+        Candidate best = ctx.best.reset(0);
+
+        for (long sources = bits.occupiedMask(); sources != 0; sources &= sources - 1) {
+            long src = Long.lowestOneBit(sources);
+            int sx = BitBoard.bitX(src, w), sy = BitBoard.bitY(src, w);
+            int val = ctx.board[sx][sy];
+            long same = bits.valueMask(val) & ~src;
+
+            long unreachable = bits.emptyMask() & ~bits.reachableFrom(sx, sy);
+            for (long targets = unreachable; targets != 0; targets &= targets - 1) {
+                long dst = Long.lowestOneBit(targets);
+                int grp = Long.bitCount(bits.floodFill(dst, same | dst));
+                if (grp >= MIN_COMBO_SIZE) {
+                    int score = (1 << Math.min(grp - MIN_COMBO_SIZE, 20)) * (val + 1);
+                    if (score > best.score) {
+                        best.set(score, BotDecision.Type.JUMP, sx, sy, BitBoard.bitX(dst, w), BitBoard.bitY(dst, w));
                     }
                 }
-
-                board[sx][sy] = val; // restore after all targets checked
             }
         }
-        return best;
+        return best.toDecision();
     }
 
     // -------------------------------------------------------------------------
     // 4a. Color Clear – remove the most numerous scattered value
     // -------------------------------------------------------------------------
 
-    private static BotDecision findColorClearTarget(int[][] board, int w, int h, int minCells) {
-        int[] counts = new int[40];
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                if (board[x][y] >= 0 && board[x][y] < 40) counts[board[x][y]]++;
+    private static BotDecision findColorClearTarget(Context ctx, int minCells) {
+        int w = ctx.w;
+        // one pass collects the count and the first cell of every value
+        int[] counts = ctx.valueCounts;
+        int[] firstCell = ctx.firstCell;
+        Arrays.fill(counts, 0);
+        for (int y = 0; y < ctx.h; y++)
+            for (int x = 0; x < w; x++) {
+                int v = ctx.board[x][y];
+                if (v < 0 || v >= MAX_TRACKED_VALUE) continue;
+                if (counts[v]++ == 0) firstCell[v] = y * w + x;
+            }
 
         int bestVal = -1, bestCount = 0;
-        for (int v = 0; v < 40; v++) {
+        for (int v = 0; v < MAX_TRACKED_VALUE; v++) {
             if (counts[v] >= minCells && counts[v] > bestCount) {
                 // Only clear if they can't merge naturally (max group < 4)
-                if (findMaxGroupSizeOfValue(board, w, h, v) < MIN_COMBO_SIZE) {
+                int maxGroup = (ctx.bits != null) ? ctx.bits.maxGroupSize(v) : findMaxGroupSizeOfValue(ctx, v);
+                if (maxGroup < MIN_COMBO_SIZE) {
                     bestCount = counts[v];
                     bestVal = v;
                 }
             }
         }
         if (bestVal < 0) return null;
-
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                if (board[x][y] == bestVal) return BotDecision.colorClear(x, y);
-        return null;
+        return BotDecision.colorClear(firstCell[bestVal] % w, firstCell[bestVal] / w);
     }
 
     // -------------------------------------------------------------------------
@@ -323,7 +904,9 @@ public class SelfPlayBot {
     // 4d. Dissolve worst cell (panic, board almost full)
     // -------------------------------------------------------------------------
 
-    private static BotDecision findDissolveWorstCell(int[][] board, int w, int h) {
+    private static BotDecision findDissolveWorstCell(Context ctx) {
+        int[][] board = ctx.board;
+        int w = ctx.w, h = ctx.h;
         // Remove the lowest-value cell that has fewest same-value neighbours
         int worstScore = Integer.MAX_VALUE;
         int bestX = -1, bestY = -1;
@@ -331,12 +914,11 @@ public class SelfPlayBot {
             for (int x = 0; x < w; x++) {
                 int val = board[x][y];
                 if (val < 0) continue;
-                if (countGroup(board, w, h, x, y, val) >= MIN_COMBO_SIZE) continue; // keep merge-ready
+                if (groupSize(ctx, x, y, val) >= MIN_COMBO_SIZE) continue; // keep merge-ready
                 // score: lower value = worse (more expendable), fewer same-value neighbours = more isolated
                 int sameNeighbours = 0;
-                int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-                for (int[] d : dirs) {
-                    int nx = x + d[0], ny = y + d[1];
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
                     if (nx >= 0 && nx < w && ny >= 0 && ny < h && board[nx][ny] == val) sameNeighbours++;
                 }
                 int score = val * 10 + sameNeighbours;
@@ -351,152 +933,184 @@ public class SelfPlayBot {
     // 5. Clustering – approach nearest same-value cell
     // -------------------------------------------------------------------------
 
-    private static BotDecision findClusterMove(int[][] board, int w, int h) {
-        BotDecision best = null;
-        int bestScore = Integer.MIN_VALUE;
-
-        for (int sy = 0; sy < h; sy++) {
-            for (int sx = 0; sx < w; sx++) {
-                int val = board[sx][sy];
-                if (val < 0) continue;
-                int curDist = nearestSameValueDist(board, w, h, sx, sy, val, -1, -1);
-                if (curDist == Integer.MAX_VALUE) continue;
-
-                board[sx][sy] = -1; // keep empty so nearestSameValueDist doesn't see it
-                boolean[][] reach = bfsEmpty(board, w, h, sx, sy);
-
-                for (int ty = 0; ty < h; ty++) {
-                    for (int tx = 0; tx < w; tx++) {
-                        if (tx == sx && ty == sy || !reach[tx][ty]) continue;
-                        // excX/excY still passed for safety but board is already cleared
-                        int newDist = nearestSameValueDist(board, w, h, tx, ty, val, sx, sy);
-                        int score = (curDist - newDist) * 100 + (val + 1);
-                        if (score > bestScore) { bestScore = score; best = BotDecision.normal(sx, sy, tx, ty); }
-                    }
-                }
-
-                board[sx][sy] = val; // restore after all targets checked
+    private static final SourceEvaluator CLUSTER = (ctx, sx, sy, best) -> {
+        int[][] b = ctx.board;
+        int w = ctx.w, h = ctx.h;
+        int val = b[sx][sy];
+        if (val < 0) return;
+        int src = sy * w + sx;
+        // distances leave the source out, as if it had already been lifted
+        int curDist = ctx.nearestOther(val, src, src);
+        if (curDist == Integer.MAX_VALUE) return;
+
+        BitBoard bits = ctx.bits;
+        long reachMask = (bits != null) ? bits.reachableFrom(sx, sy) : 0L;
+
+        for (int ty = 0; ty < h; ty++) {
+            for (int tx = 0; tx < w; tx++) {
+                if (tx == sx && ty == sy) continue;
+                if (bits != null ? (reachMask & bits.bit(tx, ty)) == 0
+                                 : !ctx.canReach(sx, sy, tx, ty)) continue;
+                int newDist = ctx.nearestOther(val, ty * w + tx, src);
+                int score = (curDist - newDist) * ctx.params.clusterWeight + (val + 1);
+                if (score > best.score) best.set(score, BotDecision.Type.NORMAL, sx, sy, tx, ty);
             }
         }
-        if (best != null) return best;
-        return findAnyMove(board, w, h);
+    };
+
+    private static BotDecision findClusterMove(Context ctx) {
+        ctx.computeDistances();
+        BotDecision move = scanSources(ctx, Integer.MIN_VALUE, CLUSTER).toDecision();
+        if (move != null) return move;
+        return (ctx.bits != null) ? findAnyMoveBits(ctx) : findAnyMove(ctx);
     }
 
     // -------------------------------------------------------------------------
-    // Helpers
+    // Source scan – serial, or split across the fork-join pool on big boards
     // -------------------------------------------------------------------------
 
-    private static int chainLookahead(int[][] board, int w, int h,
-                                      int tx, int ty, int val, int grp) {
-        boolean[][] inGroup = new boolean[w][h];
-        markGroup(board, w, h, tx, ty, val, inGroup);
-        int higherVal = val + 2;
-        int count = 0;
-        outer:
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                if (!inGroup[x][y]) continue;
-                int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-                for (int[] d : dirs) {
-                    int nx = x + d[0], ny = y + d[1];
-                    if (nx >= 0 && nx < w && ny >= 0 && ny < h
-                            && board[nx][ny] == higherVal && !inGroup[nx][ny]) {
-                        count++;
-                        if (count >= MIN_COMBO_SIZE - 1) break outer;
-                    }
-                }
+    /** Best move found so far; only a strictly higher score replaces it. */
+    static final class Candidate {
+        int score;
+        private BotDecision.Type type;
+        private int sx, sy, tx, ty;
+
+        Candidate reset(int initialScore) {
+            score = initialScore;
+            type = null;
+            return this;
+        }
+
+        void set(int score, BotDecision.Type type, int sx, int sy, int tx, int ty) {
+            this.score = score;
+            this.type = type;
+            this.sx = sx; this.sy = sy;
+            this.tx = tx; this.ty = ty;
+        }
+
+        BotDecision toDecision() {
+            if (type == null) return null;
+            switch (type) {
+                case JUMP:     return BotDecision.jump(sx, sy, tx, ty);
+                case DISSOLVE: return BotDecision.dissolve(sx, sy);
+                default:       return BotDecision.normal(sx, sy, tx, ty);
             }
         }
-        return (count >= MIN_COMBO_SIZE - 1) ? count * 500 : 0;
     }
 
-    private static int nearestSameValueDist(int[][] board, int w, int h,
-                                            int ox, int oy, int val, int excX, int excY) {
-        int min = Integer.MAX_VALUE;
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++) {
-                if (x == ox && y == oy) continue;
-                if (x == excX && y == excY) continue;
-                if (board[x][y] == val) min = Math.min(min, Math.abs(x-ox) + Math.abs(y-oy));
-            }
-        return min;
+    /** Scores every move of the source cell (sx, sy) into best; restores ctx.board before returning. */
+    interface SourceEvaluator {
+        void evaluate(Context ctx, int sx, int sy, Candidate best);
     }
 
-    private static BotDecision findAnyMove(int[][] board, int w, int h) {
-        for (int sy = 0; sy < h; sy++) {
-            for (int sx = 0; sx < w; sx++) {
-                int val = board[sx][sy];
-                if (val < 0) continue;
-                board[sx][sy] = -1;
-                boolean[][] reach = bfsEmpty(board, w, h, sx, sy);
-                board[sx][sy] = val;
-                for (int ty = 0; ty < h; ty++)
-                    for (int tx = 0; tx < w; tx++)
-                        if (reach[tx][ty] && !(tx == sx && ty == sy))
-                            return BotDecision.normal(sx, sy, tx, ty);
-            }
+    /** Boards with at least this many cells evaluate their source cells in parallel. */
+    static final int PARALLEL_MIN_CELLS = 256;
+
+    /**
+     * Runs eval for every source cell in row-major order and returns the best candidate.
+     * The parallel scan hands each task its own worker context and keeps the earlier
+     * task's result on equal scores, so it picks exactly the move the serial scan picks.
+     */
+    static Candidate scanSources(Context ctx, int initialScore, SourceEvaluator eval) {
+        int cells = ctx.w * ctx.h;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (cells < PARALLEL_MIN_CELLS || parallelism < 2) {
+            return scanRange(ctx, 0, cells, ctx.best.reset(initialScore), eval);
         }
-        return null;
+        int grain = Math.max(ctx.w, cells / (parallelism * 4));
+        return ForkJoinPool.commonPool().invoke(new SourceScan(ctx, 0, cells, grain, initialScore, eval));
     }
 
-    private static int findMaxGroupSizeOfValue(int[][] board, int w, int h, int val) {
-        boolean[][] vis = new boolean[w][h];
-        int max = 0;
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++) {
-                if (board[x][y] == val && !vis[x][y]) {
-                    int g = countGroupMark(board, w, h, x, y, val, vis);
-                    if (g > max) max = g;
-                }
+    private static Candidate scanRange(Context ctx, int from, int to, Candidate best, SourceEvaluator eval) {
+        for (int cell = from; cell < to; cell++) {
+            eval.evaluate(ctx, cell % ctx.w, cell / ctx.w, best);
+        }
+        return best;
+    }
+
+    private static final class SourceScan extends RecursiveTask<Candidate> {
+        private static final long serialVersionUID = 1L;
+
+        private final Context ctx;
+        private final int from, to, grain, initialScore;
+        private final SourceEvaluator eval;
+
+        SourceScan(Context ctx, int from, int to, int grain, int initialScore, SourceEvaluator eval) {
+            this.ctx = ctx;
+            this.from = from; this.to = to;
+            this.grain = grain;
+            this.initialScore = initialScore;
+            this.eval = eval;
+        }
+
+        @Override
+        protected Candidate compute() {
+            if (to - from <= grain) {
+                return scanRange(new Context(ctx), from, to, new Candidate().reset(initialScore), eval);
             }
-        return max;
+            int mid = (from + to) >>> 1;
+            SourceScan left  = new SourceScan(ctx, from, mid, grain, initialScore, eval);
+            SourceScan right = new SourceScan(ctx, mid, to, grain, initialScore, eval);
+            left.fork();
+            Candidate r = right.compute();
+            Candidate l = left.join();
+            return (l.score >= r.score) ? l : r; // ties go to the earlier source
+        }
     }
 
-    // BFS: marks all empty cells reachable from (sx,sy). Caller sets board[sx][sy]=-1 first.
-    private static boolean[][] bfsEmpty(int[][] board, int w, int h, int sx, int sy) {
-        boolean[][] vis = new boolean[w][h];
-        ArrayDeque<int[]> q = new ArrayDeque<>();
-        vis[sx][sy] = true;
-        q.add(new int[]{sx, sy});
-        while (!q.isEmpty()) {
-            int[] c = q.poll();
-            enqueue(board, w, h, c[0]-1, c[1], vis, q);
-            enqueue(board, w, h, c[0]+1, c[1], vis, q);
-            enqueue(board, w, h, c[0], c[1]-1, vis, q);
-            enqueue(board, w, h, c[0], c[1]+1, vis, q);
-        }
-        return vis;
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Chain bonus for a merge group from its number of (member, neighbour holding
+     * value + 2) pairs: enough of them suggests the merged cell chains on.
+     */
+    private static int chainLookahead(BotParams params, int higherPairs) {
+        return (higherPairs >= MIN_COMBO_SIZE - 1) ? (MIN_COMBO_SIZE - 1) * params.chainBonus : 0;
     }
 
-    private static void enqueue(int[][] b, int w, int h, int x, int y,
-                                 boolean[][] vis, ArrayDeque<int[]> q) {
-        if (x >= 0 && x < w && y >= 0 && y < h && !vis[x][y] && b[x][y] < 0) {
-            vis[x][y] = true;
-            q.add(new int[]{x, y});
+    private static BotDecision findAnyMove(Context ctx) {
+        for (int sy = 0; sy < ctx.h; sy++) {
+            for (int sx = 0; sx < ctx.w; sx++) {
+                if (ctx.board[sx][sy] < 0) continue;
+                for (int ty = 0; ty < ctx.h; ty++)
+                    for (int tx = 0; tx < ctx.w; tx++)
+                        if (ctx.canReach(sx, sy, tx, ty))
+                            return BotDecision.normal(sx, sy, tx, ty);
+            }
         }
+        return null;
     }
 
-    private static int countGroup(int[][] board, int w, int h, int x, int y, int val) {
-        return countGroupMark(board, w, h, x, y, val, new boolean[w][h]);
+    private static BotDecision findAnyMoveBits(Context ctx) {
+        int w = ctx.w;
+        BitBoard bits = ctx.bits;
+        for (long sources = bits.occupiedMask(); sources != 0; sources &= sources - 1) {
+            long src = Long.lowestOneBit(sources);
+            int sx = BitBoard.bitX(src, w), sy = BitBoard.bitY(src, w);
+            long targets = bits.reachableFrom(sx, sy) & ~src;
+            if (targets != 0) {
+                long dst = Long.lowestOneBit(targets);
+                return BotDecision.normal(sx, sy, BitBoard.bitX(dst, w), BitBoard.bitY(dst, w));
+            }
+        }
+        return null;
     }
 
-    private static int countGroupMark(int[][] board, int w, int h, int x, int y,
-                                      int val, boolean[][] vis) {
-        if (x < 0 || x >= w || y < 0 || y >= h || vis[x][y] || board[x][y] != val) return 0;
-        vis[x][y] = true;
-        return 1 + countGroupMark(board, w, h, x-1, y, val, vis)
-                 + countGroupMark(board, w, h, x+1, y, val, vis)
-                 + countGroupMark(board, w, h, x, y-1, val, vis)
-                 + countGroupMark(board, w, h, x, y+1, val, vis);
+    private static int findMaxGroupSizeOfValue(Context ctx, int val) {
+        ctx.newStamp();
+        int max = 0;
+        for (int y = 0; y < ctx.h; y++)
+            for (int x = 0; x < ctx.w; x++) {
+                int g = ctx.fillGroup(x, y, val);
+                if (g > max) max = g;
+            }
+        return max;
     }
 
-    private static void markGroup(int[][] board, int w, int h, int x, int y,
-                                  int val, boolean[][] out) {
-        if (x < 0 || x >= w || y < 0 || y >= h || out[x][y] || board[x][y] != val) return;
-        out[x][y] = true;
-        markGroup(board, w, h, x-1, y, val, out);
-        markGroup(board, w, h, x+1, y, val, out);
-        markGroup(board, w, h, x, y-1, val, out);
-        markGroup(board, w, h, x, y+1, val, out);
+    private static int groupSize(Context ctx, int x, int y, int val) {
+        if (ctx.bits == null) return ctx.countGroup(x, y, val);
+        return Long.bitCount(ctx.bits.floodFill(ctx.bits.bit(x, y), ctx.bits.valueMask(val)));
     }
 }
@@ -0,0 +1,176 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Computes self-play decisions on a background daemon thread so the game loop
+ * never waits for the bot. The loop submits an immutable Snapshot and polls for
+ * the Result on later frames; both directions go through AtomicReferences and
+ * neither call blocks. Results computed for an older state, whether the board,
+ * level, score or bonus counts changed since, are dropped.
+ * The thread starts with the first submit and ends with close.
+ */
+final class SelfPlayWorker implements Runnable {
+
+    private static final String TAG = "SelfPlayWorker";
+
+    /** Everything a decision depends on, copied on the game loop thread. */
+    static final class Snapshot {
+        final int[][] board;
+        final int level;
+        final long score;
+        final int[] bonusCounts;
+        /** {@link #stateVersion} of the copied state. */
+        final long version;
+
+        Snapshot(GameBoardArray src, int level, long score, int[] bonusCounts) {
+            int w = src.getWidth(), h = src.getHeight();
+            board = new int[w][h];
+            for (int x = 0; x < w; x++)
+                for (int y = 0; y < h; y++)
+                    board[x][y] = src.get(x, y);
+            this.level = level;
+            this.score = score;
+            this.bonusCounts = bonusCounts.clone();
+            version = stateVersion(src, level, score, bonusCounts);
+        }
+    }
+
+    /**
+     * Board version, level, score and bonus counts folded into one value, so a
+     * bonus bought or a score change without a board write also makes a
+     * decision stale. Equal states give equal values.
+     */
+    static long stateVersion(GameBoardArray board, int level, long score, int[] bonusCounts) {
+        long v = GameRandom.mix(board.getVersion() + GameRandom.GOLDEN_GAMMA * level);
+        v = GameRandom.mix(v ^ score);
+        for (int count : bonusCounts) {
+            v = GameRandom.mix(v + GameRandom.GOLDEN_GAMMA + count);
+        }
+        return v;
+    }
+
+    static final class Result {
+        /** State version the decision was computed for. */
+        final long version;
+        /** Null if the bot found nothing to do. */
+        final SelfPlayBot.BotDecision decision;
+
+        Result(long version, SelfPlayBot.BotDecision decision) {
+            this.version = version;
+            this.decision = decision;
+        }
+    }
+
+    private final SelfPlayBot.Context context;
+    private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    private final AtomicReference<Result> done = new AtomicReference<>();
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private Thread thread;
+    private volatile boolean closed;
+
+    /** @param context used only on the worker thread from now on */
+    SelfPlayWorker(SelfPlayBot.Context context) {
+        this.context = context;
+    }
+
+    /** True from submit until the matching result is published. */
+    boolean isBusy() {
+        return busy.get();
+    }
+
+    /**
+     * Hands snapshot to the worker unless a decision is already in progress.
+     *
+     * @return false if the worker was busy and the snapshot was ignored
+     */
+    boolean submit(Snapshot snapshot) {
+        if (closed || !busy.compareAndSet(false, true)) {
+            return false;
+        }
+        pending.set(snapshot);
+        synchronized (this) {
+            if (closed) {
+                busy.set(false);
+                return false;
+            }
+            if (thread == null) {
+                thread = new Thread(this, TAG);
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                LockSupport.unpark(thread);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the worker thread once the decision in progress, if any, is done.
+     * Later submits are ignored. Does not wait; see awaitTermination.
+     */
+    synchronized void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Waits up to timeoutMillis for the thread to end after close.
+     *
+     * @return true if no worker thread is running
+     */
+    boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t == null) {
+            return true;
+        }
+        t.join(timeoutMillis);
+        return !t.isAlive();
+    }
+
+    /**
+     * Takes the published result if it was computed for currentVersion, the
+     * {@link #stateVersion} of the game as it is now.
+     *
+     * @return the result, or null if none is ready or it was stale and dropped
+     */
+    Result poll(long currentVersion) {
+        Result result = done.getAndSet(null);
+        if (result == null || result.version != currentVersion) {
+            return null;
+        }
+        return result;
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            Snapshot snapshot = pending.getAndSet(null);
+            if (snapshot == null) {
+                // close interrupts, which wakes park and keeps it from blocking again
+                LockSupport.park(this);
+                continue;
+            }
+            SelfPlayBot.BotDecision decision = null;
+            try {
+                context.load(snapshot.board);
+                context.setProgress(snapshot.level, snapshot.score);
+                decision = SelfPlayBot.computeDecision(context, snapshot.bonusCounts);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "self-play decision failed", e);
+            } finally {
+                done.set(new Result(snapshot.version, decision));
+                busy.set(false);
+            }
+        }
+    }
+}
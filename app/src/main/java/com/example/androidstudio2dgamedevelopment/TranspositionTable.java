@@ -0,0 +1,122 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import java.util.Arrays;
+
+/**
+ * Lossy fixed-size cache of search values, one entry per slot. A slot keeps the
+ * deeper of two results unless its entry is left over from an earlier search,
+ * in which case it is always replaced. Keys combine a board hash with the
+ * level, the score still missing to the next level and the bonus counts, since
+ * all of them change what a position is worth.
+ */
+final class TranspositionTable {
+
+    private final long[] keys;
+    private final double[] values;
+    private final byte[] depths;
+    private final byte[] ages;
+    private final boolean[] used;
+    private final int mask;
+    private byte age;
+
+    private long probes;
+    private long hits;
+    private long stores;
+    private long overwrites;
+
+    /** @param sizeLog2 table holds 1 << sizeLog2 entries */
+    TranspositionTable(int sizeLog2) {
+        int size = 1 << sizeLog2;
+        keys   = new long[size];
+        values = new double[size];
+        depths = new byte[size];
+        ages   = new byte[size];
+        used   = new boolean[size];
+        mask   = size - 1;
+    }
+
+    /**
+     * Key of a position with the given board hash, level, score and bonuses in
+     * hand. The score enters as its exact distance to the next level: merge
+     * scores step by 4 but the gaps between levels do not, so any coarser
+     * bucket would mix positions that level up after different merges.
+     */
+    static long key(long boardHash, int level, long score, int[] bonusCounts) {
+        long toNextLevel = GameRules.getLevelThreshold(level + 1) - score;
+        long k = boardHash ^ GameRandom.mix(0x6A09E667F3BCC909L + level)
+                ^ GameRandom.mix(0x3C6EF372FE94F82BL ^ toNextLevel);
+        for (int i = 0; i < bonusCounts.length; i++) {
+            k ^= GameRandom.mix(((long) (i + 1) << 32) | (bonusCounts[i] & 0xffffffffL));
+        }
+        return k;
+    }
+
+    /** Marks all current entries as replaceable; call once per decision. */
+    void newSearch() {
+        age++;
+    }
+
+    /** Stored value for key if it was searched at least depth deep, otherwise NaN. */
+    double probe(long key, int depth) {
+        probes++;
+        int i = slot(key);
+        if (used[i] && keys[i] == key && depths[i] >= depth) {
+            hits++;
+            return values[i];
+        }
+        return Double.NaN;
+    }
+
+    void store(long key, int depth, double value) {
+        int i = slot(key);
+        if (used[i] && ages[i] == age && depths[i] > depth) {
+            return; // keep the deeper result of this search
+        }
+        if (used[i] && keys[i] != key) overwrites++;
+        keys[i]   = key;
+        values[i] = value;
+        depths[i] = (byte) depth;
+        ages[i]   = age;
+        used[i]   = true;
+        stores++;
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    long getProbes() {
+        return probes;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getStores() {
+        return stores;
+    }
+
+    /** Stores that evicted a different position. */
+    long getOverwrites() {
+        return overwrites;
+    }
+
+    /** Fraction of probes that returned a value; 0 before the first probe. */
+    double getHitRate() {
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    void resetStats() {
+        probes = hits = stores = overwrites = 0L;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        resetStats();
+    }
+}
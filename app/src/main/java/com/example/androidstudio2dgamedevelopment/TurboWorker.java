@@ -0,0 +1,187 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays turbo self-play on a background daemon thread: the bot's moves go
+ * straight through the engine and finished games restart at once with seeds
+ * from gameSeeds. While the worker runs it owns the engine and gameSeeds; the
+ * game loop touches neither and draws the latest published Frame instead.
+ * pause hands both back once the turn in progress is done, resume hands them
+ * over again. Neither call blocks.
+ */
+final class TurboWorker implements Runnable {
+
+    private static final String TAG = "TurboWorker";
+    /** Least time between two published frames, about one frame of the game loop. */
+    private static final long PUBLISH_INTERVAL_NANOS = 15_000_000L;
+
+    /** The engine's state as it is to be drawn, copied on the worker thread. */
+    static final class Frame {
+        final int[][] board;
+        final int level;
+        final long score;
+        final int[] bonusCounts;
+        /** Highest score of this and the games finished before it since the worker started. */
+        final long bestScore;
+        /** Games finished and restarted since the worker started. */
+        final int gamesFinished;
+
+        Frame(GameEngine engine, long bestScore, int gamesFinished) {
+            GameBoardArray src = engine.getBoard();
+            int w = src.getWidth(), h = src.getHeight();
+            board = new int[w][h];
+            for (int x = 0; x < w; x++)
+                for (int y = 0; y < h; y++)
+                    board[x][y] = src.get(x, y);
+            level = engine.getLevel();
+            score = engine.getScore();
+            bonusCounts = engine.getBonusCounts().clone();
+            this.bestScore = Math.max(bestScore, score);
+            this.gamesFinished = gamesFinished;
+        }
+    }
+
+    private final GameEngine engine;
+    private final SelfPlayBot.Context context;
+    private final GameRandom gameSeeds;
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+    /** True while the worker owns the engine. */
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean pauseRequested;
+    private Thread thread;
+    private volatile boolean closed;
+
+    private long bestScore;
+    private int gamesFinished;
+
+    /** @param context used only on the worker thread from now on */
+    TurboWorker(GameEngine engine, SelfPlayBot.Context context, GameRandom gameSeeds) {
+        this.engine = engine;
+        this.context = context;
+        this.gameSeeds = gameSeeds;
+    }
+
+    /**
+     * Hands the engine to the worker. Call only while {@link #isPaused};
+     * nothing on the calling side may touch the engine until it is again.
+     *
+     * @return false if the worker is closed or already running
+     */
+    boolean resume() {
+        if (closed || running.get()) {
+            return false;
+        }
+        pauseRequested = false;
+        running.set(true);
+        synchronized (this) {
+            if (closed) {
+                running.set(false);
+                return false;
+            }
+            if (thread == null) {
+                thread = new Thread(this, TAG);
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                LockSupport.unpark(thread);
+            }
+        }
+        return true;
+    }
+
+    /** Asks the worker to hand the engine back after its current turn; see isPaused. */
+    void pause() {
+        pauseRequested = true;
+    }
+
+    /** True while the caller owns the engine: before resume and after a pause took effect. */
+    boolean isPaused() {
+        return !running.get();
+    }
+
+    /** Takes the frame published last, or null if there is none since the previous poll. */
+    Frame poll() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Stops the worker thread once the turn in progress, if any, is done.
+     * Later resumes are refused. Does not wait; see awaitTermination.
+     */
+    synchronized void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Waits up to timeoutMillis for the thread to end after close.
+     *
+     * @return true if no worker thread is running
+     */
+    boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t == null) {
+            return true;
+        }
+        t.join(timeoutMillis);
+        return !t.isAlive();
+    }
+
+    @Override
+    public void run() {
+        long lastPublish = System.nanoTime();
+        while (!closed) {
+            if (!running.get()) {
+                // close interrupts, which wakes park and keeps it from blocking again
+                LockSupport.park(this);
+                continue;
+            }
+            if (pauseRequested) {
+                publish();
+                running.set(false);
+                continue;
+            }
+            boolean moved = false;
+            try {
+                moved = playTurn();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "turbo turn failed", e);
+            }
+            long now = System.nanoTime();
+            if (now - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                publish();
+                lastPublish = now;
+            }
+            if (!moved) {
+                // nothing to do right now, try again about a frame later
+                LockSupport.parkNanos(this, PUBLISH_INTERVAL_NANOS);
+            }
+        }
+        running.set(false);
+    }
+
+    /** One bot move, or a restart if the game is over; false if the bot found nothing to do. */
+    private boolean playTurn() {
+        if (engine.isGameOver()) {
+            bestScore = Math.max(bestScore, engine.getScore());
+            gamesFinished++;
+            engine.newGame(gameSeeds.nextLong());
+            return true;
+        }
+        return SelfPlayBot.playTurn(context, engine);
+    }
+
+    private void publish() {
+        latest.set(new Frame(engine, bestScore, gamesFinished));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRunnerTest {
+
+    @Test
+    public void sameSeedAndThreadsGiveTheSameBatch() throws InterruptedException {
+        BatchRunner.Summary first = new BatchRunner(5, 7, 9, 2, 300, 5L).run();
+        BatchRunner.Summary second = new BatchRunner(5, 7, 9, 2, 300, 5L).run();
+
+        assertEquals(9, first.games);
+        assertArrayEquals(first.scores, second.scores);
+        assertArrayEquals(first.levels, second.levels);
+        assertArrayEquals(first.bonusUses, second.bonusUses);
+        assertEquals(first.moves, second.moves);
+        // one timed decision per move, plus at most one rejected or empty decision per game
+        assertTrue(first.latency.count() >= first.moves);
+        assertTrue(first.latency.count() <= first.moves + first.games);
+        assertTrue(first.toJson("x").contains("\"games\": 9"));
+        assertEquals(BatchRunner.Summary.csvHeader().split(",").length, first.toCsv("x").split(",").length);
+    }
+
+    @Test
+    public void mctsBatchesAreReproducible() throws InterruptedException {
+        BatchRunner first = new BatchRunner(4, 4, 4, 2, 60, 3L);
+        BatchRunner second = new BatchRunner(4, 4, 4, 2, 60, 3L);
+        first.setLookahead(16, 0L);
+        second.setLookahead(16, 0L);
+        BatchRunner.Summary a = first.run(), b = second.run();
+
+        assertArrayEquals(a.scores, b.scores);
+        assertArrayEquals(a.levels, b.levels);
+        assertEquals(a.moves, b.moves);
+    }
+
+    @Test
+    public void csvLabelIsQuoted() throws InterruptedException {
+        BatchRunner.Summary summary = new BatchRunner(4, 4, 1, 1, 10, 1L).run();
+
+        assertTrue(summary.toCsv("a,b").startsWith("\"a,b\","));
+        assertTrue(summary.toCsv("say \"hi\"").startsWith("\"say \"\"hi\"\"\","));
+        assertEquals("\"\"", BatchRunner.Summary.csvField(""));
+    }
+
+    @Test
+    public void jsonLabelEscapesControlCharacters() {
+        assertEquals("\"a\\nb\\tc\\u0001\\\\ \\\"q\\\"\"",
+                BatchRunner.Summary.jsonString("a\nb\tc\u0001\\ \"q\""));
+        assertEquals("\"caf\u00e9\"", BatchRunner.Summary.jsonString("caf\u00e9"));
+    }
+
+    @Test
+    public void latencyPercentilesStayWithinTheirBucket() {
+        BatchRunner.LatencyHistogram histogram = new BatchRunner.LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        assertEquals(100_000, histogram.count());
+        long p50 = histogram.percentile(50), p99 = histogram.percentile(99);
+        assertTrue(p50 <= 50_000 && p50 > 50_000 * 15 / 16);
+        assertTrue(p99 <= 99_000 && p99 > 99_000 * 15 / 16);
+        for (long v : new long[] {0, 7, 16, 31, 32, 1000, 123_456_789L}) {
+            long lower = BatchRunner.LatencyHistogram.lowerBound(BatchRunner.LatencyHistogram.bucket(v));
+            assertTrue(lower <= v && v - lower <= Math.max(1, v / 16));
+        }
+    }
+}
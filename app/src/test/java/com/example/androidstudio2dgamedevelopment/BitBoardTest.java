@@ -0,0 +1,52 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitBoardTest {
+
+    private static int[][] emptyBoard(int w, int h) {
+        int[][] board = new int[w][h];
+        for (int[] col : board) Arrays.fill(col, -1);
+        return board;
+    }
+
+    @Test
+    public void reachabilityStopsAtWallsAndDoesNotWrapRows() {
+        int[][] board = emptyBoard(4, 4);
+        for (int y = 0; y < 4; y++) board[1][y] = 0; // wall in column 1
+        BitBoard bits = new BitBoard(4, 4);
+        bits.load(board);
+
+        long reach = bits.reachableFrom(0, 0);
+        assertEquals(4, Long.bitCount(reach));
+        assertTrue((reach & bits.colMask(0)) == reach);
+        assertEquals(12, bits.freeCount());
+    }
+
+    @Test
+    public void groupSizesMatchConnectedCells() {
+        int[][] board = emptyBoard(8, 8);
+        board[0][0] = 2; board[1][0] = 2; board[1][1] = 2; board[1][2] = 2;
+        board[7][0] = 2; // same value, not connected
+        BitBoard bits = new BitBoard(8, 8);
+        bits.load(board);
+
+        assertEquals(4, Long.bitCount(bits.floodFill(bits.bit(0, 0), bits.valueMask(2))));
+        assertEquals(4, bits.maxGroupSize(2));
+        assertEquals(0, bits.maxGroupSize(3));
+    }
+
+    @Test
+    public void onlyBoardsUpToSixtyFourCellsFit() {
+        assertTrue(BitBoard.fits(8, 8));
+        assertTrue(BitBoard.fits(64, 1));
+        assertFalse(BitBoard.fits(9, 8));
+        assertFalse(BitBoard.fits(9, 9));
+    }
+}
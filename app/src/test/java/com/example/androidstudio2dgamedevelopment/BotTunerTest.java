@@ -0,0 +1,50 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BotTunerTest {
+
+    @Test
+    public void sameSeedPlaysTheSameGame() {
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+        GameEngine first  = new GameEngine(5, 7, 99L);
+        GameEngine second = new GameEngine(5, 7, 99L);
+
+        long score = BotTuner.playGame(ctx, first, 300);
+
+        assertEquals(score, BotTuner.playGame(ctx, second, 300));
+        assertEquals(first.getMoveCount(), second.getMoveCount());
+        assertEquals(first.getBoard().getHash(), second.getBoard().getHash());
+        assertTrue(first.getMoveCount() > 0);
+    }
+
+    @Test
+    public void statsSortScoresAndUseNearestRankPercentiles() {
+        BotTuner.Stats stats = new BotTuner.Stats(BotParams.DEFAULT, new long[] {40, 10, 30, 20, 50}, 1_000_000_000L);
+
+        assertEquals(30.0, stats.mean, 1e-9);
+        assertEquals(10L, stats.percentile(10));
+        assertEquals(30L, stats.percentile(50));
+        assertEquals(50L, stats.percentile(100));
+        assertEquals(5.0, stats.gamesPerSecond, 1e-9);
+    }
+
+    @Test
+    public void mutationsStayInRange() {
+        BotTuner tuner = new BotTuner(5, 7, 1, 1, 1L);
+        Random rand = new Random(3L);
+        BotParams p = BotParams.DEFAULT;
+        for (int i = 0; i < 200; i++) {
+            p = tuner.mutate(p, rand);
+            assertTrue(p.crowdedRatio > 0f && p.crowdedRatio < 1f);
+            assertTrue(p.clusterWeight >= 1);
+            assertTrue(p.bombMinCells >= 1 && p.bombMinCells <= 9);
+            assertTrue(p.delLineMinFilled >= 1 && p.delLineMinFilled <= 7);
+        }
+    }
+}
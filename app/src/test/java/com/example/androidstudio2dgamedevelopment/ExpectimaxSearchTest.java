@@ -0,0 +1,101 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExpectimaxSearchTest {
+
+    private static int[][] emptyBoard(int w, int h) {
+        int[][] board = new int[w][h];
+        for (int[] col : board) Arrays.fill(col, -1);
+        return board;
+    }
+
+    @Test
+    public void searchAvoidsFillingTheBoard() {
+        // 2 2 2
+        // 0 1 .
+        // 3 . 2   only moving the lower 2 up merges; anything else fills the board
+        int[][] board = emptyBoard(3, 3);
+        board[0][0] = 2; board[1][0] = 2; board[2][0] = 2;
+        board[0][1] = 0; board[1][1] = 1;
+        board[0][2] = 3; board[2][2] = 2;
+        ExpectimaxSearch search = new ExpectimaxSearch(3, 3);
+
+        SelfPlayBot.BotDecision d = search.search(board, 1, 0L, new int[8], 200_000_000L, null);
+
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, d.type);
+        assertEquals(2, d.p1x);
+        assertEquals(2, d.p1y);
+        assertEquals(2, d.p2x);
+        assertEquals(1, d.p2y);
+        assertTrue(search.getCompletedDepth() >= 1);
+        assertEquals(2, board[2][2]); // input board left untouched
+    }
+
+    @Test
+    public void repeatedSearchReusesTheTranspositionTable() {
+        int[][] board = emptyBoard(4, 4);
+        board[0][0] = 1; board[1][0] = 1; board[3][3] = 1;
+        board[2][2] = 0; board[0][3] = 2;
+        ExpectimaxSearch search = new ExpectimaxSearch(4, 4, 12);
+
+        search.search(board, 1, 0L, new int[8], 50_000_000L, null);
+        int firstDepth = search.getCompletedDepth();
+        search.getTable().resetStats();
+        search.search(board, 1, 0L, new int[8], 50_000_000L, null);
+
+        assertTrue(search.getTable().getHits() > 0);
+        assertTrue(search.getCompletedDepth() >= firstDepth);
+    }
+
+    @Test
+    public void expiredBudgetReturnsTheFallback() {
+        int[][] board = emptyBoard(6, 6);
+        board[0][0] = 1; board[5][5] = 3; board[2][3] = 0;
+        SelfPlayBot.BotDecision fallback = SelfPlayBot.BotDecision.normal(5, 5, 4, 5);
+        ExpectimaxSearch search = new ExpectimaxSearch(6, 6);
+
+        SelfPlayBot.BotDecision d = search.search(board, 1, 0L, new int[8], -1L, fallback);
+
+        assertSame(fallback, d);
+        assertEquals(0, search.getCompletedDepth());
+    }
+
+    @Test
+    public void boardWithoutMovesReturnsTheFallback() {
+        int[][] board = new int[2][2];
+        board[0][0] = 0; board[1][0] = 1; board[0][1] = 2; board[1][1] = 3;
+
+        assertNull(new ExpectimaxSearch(2, 2).search(board, 1, 0L, new int[8], 1_000_000L, null));
+    }
+
+    @Test
+    public void hashDeltaFollowsChainsAndPruning() {
+        // 1 1 . .
+        // 1 0 0 .   moving the lone 1 into the gap merges four 1s into a 3;
+        // . 0 . 1   reaching level 2 then prunes the 0s
+        FlatBoard rules = new FlatBoard(4, 3);
+        int[] b = new int[12];
+        Arrays.fill(b, -1);
+        b[0] = 1; b[1] = 1; b[4] = 1; b[5] = 0; b[6] = 0; b[9] = 0; b[11] = 1;
+        long hash = rules.hash(b);
+        rules.takeHashDelta();
+
+        rules.write(b, 8, b[11]);
+        rules.write(b, 11, -1);
+        long score = rules.resolveChain(b, 8, 1);
+        int level = rules.advanceLevel(b, GameRules.getLevelThreshold(2) + score, 1);
+
+        assertEquals(2, level);
+        assertEquals(-1, b[5]);
+        assertEquals(rules.hash(b), hash ^ rules.takeHashDelta());
+        assertEquals(0L, rules.takeHashDelta());
+    }
+}
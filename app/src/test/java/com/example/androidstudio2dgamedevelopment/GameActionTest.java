@@ -0,0 +1,154 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameActionTest {
+
+    @Test
+    public void operandsSurviveEncoding() {
+        int swap = GameAction.swap(GameAction.MAX_OPERAND, 12345);
+        assertEquals(GameAction.SWAP, GameAction.type(swap));
+        assertEquals(GameAction.MAX_OPERAND, GameAction.first(swap));
+        assertEquals(12345, GameAction.second(swap));
+
+        int shift = GameAction.shiftLine(6, false, true);
+        assertEquals(GameAction.SHIFT_LINE, GameAction.type(shift));
+        assertEquals(6, GameAction.first(shift));
+        assertFalse(GameAction.isRow(shift));
+        assertTrue(GameAction.isForward(shift));
+        assertEquals(SelfPlayBot.IDX_SHIFT_LINE, GameAction.bonusIndex(shift));
+        assertEquals(SelfPlayBot.IDX_UNDO, GameAction.bonusIndex(GameAction.undo()));
+    }
+
+    @Test
+    public void boardsBeyondTheOperandRangeAreRejected() {
+        assertTrue(GameAction.fits(128, 128));
+        assertFalse(GameAction.fits(200, 100));
+        assertFalse(GameAction.fits(0, 7));
+        assertFalse(GameAction.fits(65536, 65536));
+
+        GameEngine largest = new GameEngine(128, 128, 1L);
+        int last = GameAction.normal(GameAction.MAX_CELLS - 2, GameAction.MAX_CELLS - 1);
+        assertEquals(GameAction.MAX_CELLS - 2, GameAction.first(last));
+        assertEquals(GameAction.MAX_CELLS - 1, GameAction.second(last));
+        assertEquals(128 * 128, largest.getBoard().getNumFreeCells() + 4);
+        try {
+            new GameEngine(150, 150, 1L);
+            fail("150x150 board accepted");
+        } catch (IllegalArgumentException expected) {
+            // cell indices would spill into the second operand
+        }
+        try {
+            new BatchRunner(200, 100, 1, 1, 10, 1L);
+            fail("200x100 batch accepted");
+        } catch (IllegalArgumentException expected) {
+            // rejected before any game starts
+        }
+    }
+
+    @Test
+    public void decisionsConvertBothWays() {
+        SelfPlayBot.BotDecision[] decisions = {
+                SelfPlayBot.BotDecision.normal(1, 2, 4, 6),
+                SelfPlayBot.BotDecision.jump(0, 0, 3, 5),
+                SelfPlayBot.BotDecision.dissolve(2, 3),
+                SelfPlayBot.BotDecision.bomb(4, 0),
+                SelfPlayBot.BotDecision.colorClear(1, 1),
+                SelfPlayBot.BotDecision.delLine(5, true),
+        };
+        for (SelfPlayBot.BotDecision d : decisions) {
+            SelfPlayBot.BotDecision back = GameAction.toDecision(GameAction.fromDecision(d, 5), 5);
+            assertEquals(d.type, back.type);
+            assertEquals(d.p1x, back.p1x);
+            assertEquals(d.p1y, back.p1y);
+            assertEquals(d.flag, back.flag);
+            if (d.type == SelfPlayBot.BotDecision.Type.NORMAL || d.type == SelfPlayBot.BotDecision.Type.JUMP) {
+                assertEquals(d.p2x, back.p2x);
+                assertEquals(d.p2y, back.p2y);
+            }
+        }
+        assertNull(GameAction.toDecision(GameAction.undo(), 5));
+        assertEquals(GameAction.NONE, GameAction.fromDecision(null, 5));
+    }
+
+    /**
+     * 5 5 . .
+     * 5 . 2 3
+     * . 4 . 3
+     */
+    @Test
+    public void generatedActionsAreExactlyTheUsefulLegalOnes() {
+        int[] all = new int[8];
+        Arrays.fill(all, 1);
+        GameEngine probe = engineWithBoard(all);
+        int[] actions = probe.generateActions(new int[4]);
+        int count = probe.actionCount();
+
+        Set<Integer> generated = new HashSet<>();
+        int[] types = new int[GameAction.UNDO + 1];
+        for (int i = 0; i < count; i++) {
+            assertTrue(GameAction.toString(actions[i], 4), engineWithBoard(all).apply(actions[i]));
+            generated.add(actions[i]);
+            types[GameAction.type(actions[i])]++;
+        }
+        assertEquals(count, generated.size());
+        assertEquals(7 * 5, types[GameAction.JUMP]);
+        assertEquals(7, types[GameAction.DISSOLVE]);
+        assertEquals(12, types[GameAction.BOMB]);
+        assertEquals(4, types[GameAction.COLOR_CLEAR]);  // one per value
+        assertEquals(3 + 4, types[GameAction.DEL_LINE]);
+        assertEquals(2 * (3 + 4), types[GameAction.SHIFT_LINE]);
+        assertEquals(0, types[GameAction.UNDO]);         // nothing to take back yet
+
+        int[] board = {5, 5, -1, -1, 5, -1, 2, 3, -1, 4, -1, 3};
+        for (int src = 0; src < 12; src++) {
+            for (int dst = 0; dst < 12; dst++) {
+                int normal = GameAction.normal(src, dst);
+                assertEquals(GameAction.toString(normal, 4),
+                        engineWithBoard(all).apply(normal), generated.contains(normal));
+                int swap = GameAction.swap(src, dst);
+                boolean useful = board[src] != board[dst] && engineWithBoard(all).apply(swap);
+                assertEquals(GameAction.toString(swap, 4), useful, generated.contains(swap));
+            }
+        }
+    }
+
+    @Test
+    public void undoTakesBackTheBoardButNotTheScore() {
+        int[] counts = new int[8];
+        counts[SelfPlayBot.IDX_UNDO] = 1;
+        counts[SelfPlayBot.IDX_JUMP] = 1;
+        GameEngine engine = engineWithBoard(counts);
+        long before = engine.getBoard().getHash();
+
+        assertTrue(engine.apply(GameAction.jump(9, 5)));   // 4 next to the three 5s: no merge
+        assertTrue(engine.canUndo());
+        assertTrue(engine.apply(GameAction.undo()));
+
+        assertEquals(before, engine.getBoard().getHash());
+        assertEquals(0, engine.getBonusCounts()[SelfPlayBot.IDX_UNDO]);
+        assertEquals(0, engine.getBonusCounts()[SelfPlayBot.IDX_JUMP]);
+        assertFalse(engine.apply(GameAction.undo()));
+    }
+
+    private static GameEngine engineWithBoard(int[] bonusCounts) {
+        GameEngine engine = new GameEngine(4, 3, 5L);
+        GameBoardArray board = engine.getBoard();
+        board.clear();
+        board.set(0, 0, 5); board.set(1, 0, 5);
+        board.set(0, 1, 5); board.set(2, 1, 2); board.set(3, 1, 3);
+        board.set(1, 2, 4); board.set(3, 2, 3);
+        System.arraycopy(bonusCounts, 0, engine.getBonusCounts(), 0, bonusCounts.length);
+        return engine;
+    }
+}
@@ -2,7 +2,13 @@ package com.example.androidstudio2dgamedevelopment;
 
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class GameBoardArrayTest {
@@ -55,5 +61,269 @@ public class GameBoardArrayTest {
         int spawnedValue = board.get(1, 1);
         assertTrue(spawnedValue >= 1 && spawnedValue <= 4);
     }
-}
 
+    @Test
+    public void findPathAndMergeGroupStayInsideBoardEdges() {
+        GameBoardArray board = new GameBoardArray(3, 2);
+        board.set(0, 0, 5);
+        board.set(0, 1, 5);
+        board.set(1, 1, 5);
+        board.set(2, 1, 7);
+
+        assertEquals(3, board.findMergeGroup(0, 0).size());
+        assertEquals(1, board.findMergeGroup(2, 1).size());
+
+        List<GameBoard.directionT> path = board.findPath(0, 0, 2, 0, false);
+        assertEquals(2, path.size());
+        assertTrue(board.findPath(2, 1, 0, 0, false).isEmpty());
+    }
+
+    @Test
+    public void findPathWritesStepsInMoveOrderOnLargeBoards() {
+        GameBoardArray board = new GameBoardArray(1000, 1000);
+        // wall across the middle row with a single gap at the right edge
+        for (int x = 0; x < 999; x++) {
+            board.set(x, 500, 0);
+        }
+        board.set(0, 0, 3);
+        byte[] directions = new byte[board.getNumCells()];
+
+        int length = board.findPath(0, 0, 0, 999, false, directions);
+
+        assertEquals(999 + 999 + 999, length);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < length; i++) {
+            if (directions[i] == GameBoardArray.DIR_LEFT)  x--;
+            if (directions[i] == GameBoardArray.DIR_RIGHT) x++;
+            if (directions[i] == GameBoardArray.DIR_UP)    y--;
+            if (directions[i] == GameBoardArray.DIR_DOWN)  y++;
+            assertTrue(board.isFree(x, y));
+        }
+        assertEquals(0, x);
+        assertEquals(999, y);
+        assertEquals(-1, board.findPath(0, 0, 1, 500, false, directions));
+        assertEquals(1, board.findPath(0, 0, 1, 0, true, directions));
+    }
+
+    @Test
+    public void freeCellIndexFollowsSetAndUndo() {
+        GameBoardArray board = new GameBoardArray(3, 3);
+        assertEquals(9, board.getNumFreeCells());
+
+        board.backupGameBoardWithNextModification();
+        board.set(0, 0, 1);
+        board.set(1, 1, 2);
+        board.set(1, 1, 3);
+        assertEquals(7, board.getNumFreeCells());
+
+        board.unrollBackup();
+        assertEquals(9, board.getNumFreeCells());
+    }
+
+    @Test
+    public void spawnedCellDoesNotDependOnWriteOrder() {
+        GameBoardArray direct = new GameBoardArray(5, 7, new GameRandom(5L));
+        GameBoardArray stepped = new GameBoardArray(5, 7, new GameRandom(5L));
+        direct.set(4, 0, 2);
+        // the same move animated one cell at a time
+        for (int x = 0; x < 4; x++) {
+            stepped.set(x, 0, 2);
+            stepped.set(x, 0, -1);
+        }
+        stepped.set(4, 0, 2);
+
+        for (int i = 0; i < 10; i++) {
+            Coord a = direct.randomlyAddCell(0, 3), b = stepped.randomlyAddCell(0, 3);
+            assertEquals(a.x, b.x);
+            assertEquals(a.y, b.y);
+        }
+    }
+
+    @Test
+    public void randomlyAddCellFillsBoardAndReportsFullBoard() {
+        GameBoardArray board = new GameBoardArray(4, 4);
+        for (int i = 0; i < 16; i++) {
+            assertNotNull(board.randomlyAddCell(0, 3));
+        }
+        assertEquals(0, board.getNumFreeCells());
+        assertNull(board.randomlyAddCell(0, 3));
+    }
+
+    @Test
+    public void mergeGroupsTrackJoinsAndSplits() {
+        GameBoardArray board = new GameBoardArray(5, 1);
+        board.set(0, 0, 2);
+        board.set(1, 0, 2);
+        board.set(3, 0, 2);
+        board.set(4, 0, 2);
+        assertEquals(2, board.getMergeGroupSize(0, 0));
+        assertNull(board.findMergeCandidate());
+
+        board.set(2, 0, 2);
+        assertEquals(5, board.getMergeGroupSize(4, 0));
+        assertEquals(5, board.findMergeGroup(0, 0).size());
+        assertNotNull(board.findMergeCandidate());
+
+        board.set(2, 0, 1);
+        assertEquals(2, board.getMergeGroupSize(0, 0));
+        assertEquals(1, board.getMergeGroupSize(2, 0));
+        assertNull(board.findMergeCandidate());
+    }
+
+    @Test
+    public void mergeCandidateIsTheFirstMergeableCellInRowMajorOrder() {
+        GameBoardArray board = new GameBoardArray(4, 3);
+        // a later group written first, then the earlier one right to left
+        board.set(3, 2, 5);
+        board.set(2, 2, 5);
+        board.set(1, 2, 5);
+        board.set(0, 2, 5);
+        board.set(2, 0, 1);
+        board.set(1, 0, 1);
+        board.set(0, 0, 1);
+        board.set(1, 1, 1);
+
+        Coord candidate = board.findMergeCandidate();
+        assertEquals(0, candidate.x);
+        assertEquals(0, candidate.y);
+
+        board.set(0, 0, -1);
+        board.set(3, 0, 1);
+        candidate = board.findMergeCandidate();
+        assertEquals(1, candidate.x);
+        assertEquals(0, candidate.y);
+    }
+
+    @Test
+    public void unrollBackupTakesBackMovesBeyondDefaultDepthWhenUnlimited() {
+        GameBoardArray board = new GameBoardArray(20, 20);
+        board.setUndoDepth(GameBoardArray.UNLIMITED_UNDO_DEPTH);
+        for (int move = 0; move < 100; move++) {
+            board.backupGameBoardWithNextModification();
+            board.set(move % 20, move / 20, move);
+            board.set(19, 19, move);
+        }
+        assertEquals(100, board.getNumUndoMoves());
+
+        for (int move = 99; move >= 1; move--) {
+            board.unrollBackup();
+            assertEquals(-1, board.get(move % 20, move / 20));
+            assertEquals(move - 1, board.get(19, 19));
+        }
+        board.unrollBackup();
+        assertEquals(400, board.getNumFreeCells());
+        assertEquals(0, board.getNumUndoMoves());
+    }
+
+    @Test
+    public void undoDepthDropsOldestMoves() {
+        GameBoardArray board = new GameBoardArray(3, 1);
+        board.setUndoDepth(2);
+        for (int move = 0; move < 3; move++) {
+            board.backupGameBoardWithNextModification();
+            board.set(move, 0, move);
+        }
+        assertEquals(2, board.getNumUndoMoves());
+
+        board.unrollBackup();
+        board.unrollBackup();
+        board.unrollBackup();
+        assertEquals(0, board.get(0, 0));
+        assertEquals(-1, board.get(1, 0));
+        assertEquals(-1, board.get(2, 0));
+    }
+
+    @Test
+    public void hashDependsOnlyOnBoardContent() {
+        GameBoardArray a = new GameBoardArray(4, 3);
+        GameBoardArray b = new GameBoardArray(4, 3);
+        long emptyHash = a.getHash();
+
+        a.set(0, 0, 1);
+        a.set(3, 2, 5);
+        b.set(3, 2, 7);
+        b.set(0, 0, 1);
+        assertNotEquals(a.getHash(), b.getHash());
+        b.set(3, 2, 5);
+        assertEquals(a.getHash(), b.getHash());
+
+        a.backupGameBoardWithNextModification();
+        a.shiftRowRight(0);
+        a.removeAllCellsBelowIndex(6);
+        assertNotEquals(b.getHash(), a.getHash());
+        a.unrollBackup();
+        assertEquals(b.getHash(), a.getHash());
+
+        a.removeAllCellsBelowIndex(6);
+        assertEquals(emptyHash, a.getHash());
+    }
+
+    @Test
+    public void valueIndexCountsAndListsCellsPerValue() {
+        GameBoardArray board = new GameBoardArray(3, 3);
+        board.set(0, 0, 2);
+        board.set(1, 2, 2);
+        board.set(2, 1, 30);
+        board.set(2, 2, 0);
+        board.set(2, 2, 2);
+
+        assertEquals(3, board.getValueCount(2));
+        assertEquals(0, board.getValueCount(0));
+        assertEquals(1, board.getValueCount(30));
+        assertEquals(3, board.findCellsWithValue(2).size());
+        assertTrue(board.findCellsWithValue(30).contains(new Coord(2, 1)));
+        assertEquals(3, board.findCellsBelowValue(30).size());
+
+        board.removeAllCellsBelowIndex(3);
+        assertEquals(0, board.getValueCount(2));
+        assertEquals(8, board.getNumFreeCells());
+    }
+
+    @Test
+    public void emptyRegionsAnswerReachabilityLikeFindPath() {
+        GameBoardArray board = new GameBoardArray(5, 5);
+        // vertical wall in column 2 splits the board into two regions
+        for (int y = 0; y < 5; y++) {
+            board.set(2, y, 1);
+        }
+        board.set(0, 0, 3);
+        assertEquals(2, board.getNumEmptyRegions());
+        assertNotEquals(board.getEmptyRegion(0, 1), board.getEmptyRegion(4, 1));
+        assertEquals(0, board.getEmptyRegion(2, 2));
+
+        assertTrue(board.canReach(0, 0, 1, 4, false));
+        assertFalse(board.canReach(0, 0, 4, 4, false));
+        assertTrue(board.canReach(0, 0, 2, 3, true));
+        assertFalse(board.canReach(0, 0, 2, 3, false));
+        assertEquals(-1, board.findPath(0, 0, 4, 4, false, new byte[board.getNumCells()]));
+
+        board.set(2, 4, -1); // open a gap
+        assertEquals(1, board.getNumEmptyRegions());
+        assertTrue(board.canReach(0, 0, 4, 4, false));
+        assertEquals(4 + 4, board.findPath(0, 0, 4, 4, false, new byte[board.getNumCells()]));
+    }
+
+    @Test
+    public void pathCacheServesRepeatedQueriesUntilTheBoardChanges() {
+        GameBoardArray board = new GameBoardArray(6, 6);
+        board.set(0, 0, 2);
+        byte[] first  = new byte[board.getNumCells()];
+        byte[] second = new byte[board.getNumCells()];
+
+        int length = board.findPath(0, 0, 5, 5, false, first);
+        assertEquals(length, board.findPath(0, 0, 5, 5, false, second));
+        for (int i = 0; i < length; i++) {
+            assertEquals(first[i], second[i]);
+        }
+        assertEquals(1, board.getPathCacheHits());
+        assertEquals(1, board.getPathCacheMisses());
+
+        long version = board.getVersion();
+        board.set(3, 3, 1);
+        assertNotEquals(version, board.getVersion());
+        board.findPath(0, 0, 5, 5, false, second);
+        assertEquals(1, board.getPathCacheHits());
+        assertEquals(2, board.getPathCacheMisses());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GameEngineTest {
+
+    /** Three 5s in the top row and a fourth one in the far corner; 5 never drops in at level 1. */
+    private static GameEngine mergeReadyEngine() {
+        GameEngine engine = new GameEngine(5, 7, 42L);
+        GameBoardArray board = engine.getBoard();
+        board.clear();
+        board.set(0, 0, 5); board.set(1, 0, 5); board.set(2, 0, 5);
+        board.set(4, 6, 5);
+        return engine;
+    }
+
+    @Test
+    public void newGameStartsWithFourCellsAndThreeBonuses() {
+        GameEngine engine = new GameEngine(5, 7, 1L);
+
+        assertEquals(35 - 4, engine.getBoard().getNumFreeCells());
+        int bonuses = 0;
+        for (int c : engine.getBonusCounts()) bonuses += c;
+        assertEquals(3, bonuses);
+        assertEquals(1, engine.getLevel());
+    }
+
+    @Test
+    public void mergingMoveScoresAndCancelsTheDropIns() {
+        GameEngine engine = mergeReadyEngine();
+
+        assertTrue(engine.apply(SelfPlayBot.BotDecision.normal(4, 6, 3, 0)));
+
+        assertEquals(7, engine.getBoard().get(3, 0));
+        assertEquals(GameRules.calculateMergeScore(4, 5, 1), engine.getScore());
+        assertEquals(35 - 1, engine.getBoard().getNumFreeCells());
+        assertEquals(1, engine.getMoveCount());
+    }
+
+    @Test
+    public void moveWithoutMergeDropsInThreeCells() {
+        GameEngine engine = mergeReadyEngine();
+
+        assertTrue(engine.apply(SelfPlayBot.BotDecision.normal(4, 6, 4, 5)));
+
+        assertEquals(35 - 4 - 3, engine.getBoard().getNumFreeCells());
+        assertEquals(0L, engine.getScore());
+    }
+
+    @Test
+    public void illegalDecisionsLeaveTheGameUnchanged() {
+        GameEngine engine = mergeReadyEngine();
+        long version = engine.getBoard().getVersion();
+
+        assertFalse(engine.apply(SelfPlayBot.BotDecision.normal(3, 3, 4, 4)));  // empty source
+        assertFalse(engine.apply(SelfPlayBot.BotDecision.normal(4, 6, 0, 0)));  // occupied target
+        engine.getBonusCounts()[SelfPlayBot.IDX_BOMB] = 0;
+        assertFalse(engine.apply(SelfPlayBot.BotDecision.bomb(1, 1)));
+
+        assertEquals(version, engine.getBoard().getVersion());
+        assertEquals(0, engine.getMoveCount());
+    }
+
+    @Test
+    public void mergeStepChainsScoreUntilFinalized() {
+        GameEngine engine = mergeReadyEngine();
+        GameBoardArray board = engine.getBoard();
+        board.set(4, 6, -1);
+        board.set(3, 0, 5);
+        engine.setPendingDropIns(GameRules.DROP_INS_AFTER_MOTION);
+
+        Set<Coord> group = engine.merge(3, 0);
+
+        assertEquals(4, group.size());
+        assertEquals(7, board.get(3, 0));
+        assertEquals(0, engine.getPendingDropIns());
+        assertEquals(0L, engine.getScore());
+        assertEquals(GameRules.calculateMergeScore(4, 5, 1), engine.getLiveScore());
+        assertNull(engine.merge(3, 0));
+
+        engine.finalizeChainScore();
+        assertEquals(GameRules.calculateMergeScore(4, 5, 1), engine.getScore());
+    }
+
+    @Test
+    public void levelUpReportsCellsBeforeTheyArePruned() {
+        GameEngine engine = new GameEngine(5, 7, 3L);
+        GameBoardArray board = engine.getBoard();
+        board.clear();
+        board.set(0, 0, 0); board.set(1, 1, 0); board.set(2, 2, 3);
+        final List<Integer> prunedValues = new ArrayList<>();
+        final List<int[]> awards = new ArrayList<>();
+        engine.setListener(new GameEngine.Listener() {
+            @Override
+            public void onLevelUp(int level, List<Coord> cellsToPrune) {
+                assertEquals(2, level);
+                for (Coord c : cellsToPrune) prunedValues.add(engine.getBoard().get(c.x, c.y));
+            }
+
+            @Override
+            public void onBonusesAwarded(int[] bonuses) {
+                awards.add(bonuses.clone());
+            }
+        });
+
+        engine.addScore(GameRules.getLevelThreshold(2));
+
+        assertEquals(2, engine.getLevel());
+        assertEquals(2, prunedValues.size());
+        for (int v : prunedValues) assertEquals(0, v);
+        assertEquals(35 - 1, board.getNumFreeCells());
+        assertEquals(1, awards.size());
+        assertEquals(GameRules.BONUSES_PER_AWARD, awards.get(0).length);
+        int bonuses = 0;
+        for (int c : engine.getBonusCounts()) bonuses += c;
+        assertEquals(2 * GameRules.BONUSES_PER_AWARD, bonuses);
+    }
+
+    @Test
+    public void pruningTheLastCellsQueuesDropIns() {
+        GameEngine engine = new GameEngine(5, 7, 4L);
+        engine.getBoard().clear();
+        engine.getBoard().set(3, 3, 0);
+
+        engine.addScore(GameRules.getLevelThreshold(2));
+
+        assertEquals(35, engine.getBoard().getNumFreeCells());
+        assertEquals(GameRules.DROP_INS_AFTER_MOTION, engine.getPendingDropIns());
+    }
+
+    @Test
+    public void buyingABonusCostsScore() {
+        GameEngine engine = new GameEngine(5, 7, 5L);
+        engine.addScore(250L);
+        int undos = engine.getBonusCount(SelfPlayBot.IDX_UNDO);
+
+        assertTrue(engine.buyBonus(SelfPlayBot.IDX_UNDO));
+        assertEquals(250L - GameRules.BUY_COST_UNDO, engine.getScore());
+        assertEquals(undos + 1, engine.getBonusCount(SelfPlayBot.IDX_UNDO));
+        assertFalse(engine.buyBonus(SelfPlayBot.IDX_BOMB));
+        assertEquals(250L - GameRules.BUY_COST_UNDO, engine.getScore());
+    }
+
+    @Test
+    public void playTurnResolvesTheBotsMoveAtOnce() {
+        GameEngine engine = mergeReadyEngine();
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+
+        assertTrue(SelfPlayBot.playTurn(ctx, engine));
+
+        assertEquals(1, engine.getMoveCount());
+        assertEquals(GameRules.calculateMergeScore(4, 5, 1), engine.getScore());
+        assertEquals(0, engine.getPendingDropIns());
+    }
+
+    /** Row 0 shifted forward lines up a group of 2s and a group of 3s; neither is mergeable before. */
+    private static GameEngine shiftReadyEngine() {
+        GameEngine engine = new GameEngine(5, 7, 8L);
+        GameBoardArray board = engine.getBoard();
+        board.clear();
+        board.set(0, 0, 2); board.set(1, 0, 3); board.set(2, 0, 3); board.set(3, 0, 9);
+        board.set(1, 1, 2); board.set(2, 1, 2); board.set(3, 1, 3); board.set(4, 1, 3);
+        board.set(1, 2, 2);
+        engine.addBonus(SelfPlayBot.IDX_SHIFT_LINE, 1);
+        return engine;
+    }
+
+    @Test
+    public void bonusPlayedStepByStepMatchesApply() {
+        GameEngine applied = shiftReadyEngine(), stepped = shiftReadyEngine();
+
+        assertTrue(applied.apply(GameAction.shiftLine(0, true, true)));
+
+        // GameBoard's order: empty the line, write it back from the far end, then scan
+        GameBoardArray board = stepped.getBoard();
+        board.backupGameBoardWithNextModification();
+        int[] old = new int[5];
+        for (int x = 0; x < 5; x++) {
+            old[x] = board.get(x, 0);
+            board.set(x, 0, -1);
+        }
+        for (int x = 4; x > 0; x--) {
+            if (old[x - 1] != -1) board.set(x, 0, old[x - 1]);
+        }
+        stepped.spendBonus(SelfPlayBot.IDX_SHIFT_LINE);
+        Coord candidate;
+        while ((candidate = board.findMergeCandidate()) != null) {
+            while (stepped.merge(candidate.x, candidate.y) != null) {
+                // keep merging where the first group landed
+            }
+        }
+        stepped.finalizeChainScore();
+        stepped.refillIfEmpty();
+        while (stepped.getPendingDropIns() > 0) {
+            Coord c = stepped.dropIn();
+            while (stepped.merge(c.x, c.y) != null) {
+                // chain at the dropped cell
+            }
+            stepped.finalizeChainScore();
+        }
+
+        assertTrue(applied.getScore() > 0);
+        assertEquals(applied.getBoard().getHash(), board.getHash());
+        assertEquals(applied.getScore(), stepped.getScore());
+        assertEquals(applied.getRandom().getState(), stepped.getRandom().getState());
+        for (int i = 0; i < applied.getBonusCounts().length; i++) {
+            assertEquals(applied.getBonusCount(i), stepped.getBonusCount(i));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameRandomTest {
+
+    @Test
+    public void sameSeedGivesSameSequence() {
+        GameRandom a = new GameRandom(7L), b = new GameRandom(7L);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(a.nextLong(), b.nextLong());
+            int n = a.nextInt(10);
+            assertEquals(n, b.nextInt(10));
+            assertTrue(n >= 0 && n < 10);
+        }
+    }
+
+    @Test
+    public void capturedStateContinuesTheSequence() {
+        GameRandom rand = new GameRandom(11L);
+        rand.nextInt(35);
+        long state = rand.getState();
+        int[] expected = new int[20];
+        for (int i = 0; i < expected.length; i++) expected[i] = rand.nextInt(1000);
+
+        GameRandom restored = new GameRandom(0L);
+        restored.setState(state);
+        for (int e : expected) assertEquals(e, restored.nextInt(1000));
+    }
+
+    @Test
+    public void splitStreamsDiffer() {
+        GameRandom parent = new GameRandom(3L);
+        GameRandom child = parent.split();
+        int same = 0;
+        for (int i = 0; i < 64; i++) {
+            if (parent.nextLong() == child.nextLong()) same++;
+        }
+        assertEquals(0, same);
+    }
+
+    @Test
+    public void seededEnginesPlayTheSameGame() {
+        GameEngine a = new GameEngine(5, 7, 99L), b = new GameEngine(5, 7, 99L);
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+        for (int move = 0; move < 30 && !a.isGameOver(); move++) {
+            SelfPlayBot.playTurn(ctx, a);
+            SelfPlayBot.playTurn(ctx, b);
+        }
+        assertEquals(a.getScore(), b.getScore());
+        assertEquals(a.getBoard().getHash(), b.getBoard().getHash());
+        assertEquals(a.getRandom().getState(), b.getRandom().getState());
+
+        a.newGame(a.getSeed());
+        GameEngine fresh = new GameEngine(5, 7, 99L);
+        assertEquals(fresh.getBoard().getHash(), a.getBoard().getHash());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MctsSearchTest {
+
+    private static int[][] emptyBoard(int w, int h) {
+        int[][] board = new int[w][h];
+        for (int[] col : board) Arrays.fill(col, -1);
+        return board;
+    }
+
+    /**
+     * 2 2 2
+     * 0 1 .
+     * 3 . 2   only moving the lower 2 up merges; anything else fills the board
+     */
+    private static int[][] crowdedBoard() {
+        int[][] board = emptyBoard(3, 3);
+        board[0][0] = 2; board[1][0] = 2; board[2][0] = 2;
+        board[0][1] = 0; board[1][1] = 1;
+        board[0][2] = 3; board[2][2] = 2;
+        return board;
+    }
+
+    private static void assertMergingMove(SelfPlayBot.BotDecision d) {
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, d.type);
+        assertEquals(2, d.p1x);
+        assertEquals(2, d.p1y);
+        assertEquals(2, d.p2x);
+        assertEquals(1, d.p2y);
+    }
+
+    @Test
+    public void playoutsFindTheOnlySurvivingMove() {
+        MctsSearch search = new MctsSearch(3, 3, 1, new GameRandom(7L));
+        search.setPlayouts(500);
+
+        assertMergingMove(search.search(crowdedBoard(), 1, 0L, new int[8], null));
+    }
+
+    @Test
+    public void rootParallelWorkersAgree() {
+        MctsSearch search = new MctsSearch(3, 3, 4, new GameRandom(11L));
+        search.setPlayouts(800);
+
+        assertEquals(4, search.getThreadCount());
+        assertMergingMove(search.search(crowdedBoard(), 1, 0L, new int[8], null));
+    }
+
+    @Test
+    public void sameSeedsRepeatTheSameDecisions() {
+        GameEngine engine = new GameEngine(5, 7, 3L);
+        int[][] board = emptyBoard(5, 7);
+        for (int x = 0; x < 5; x++)
+            for (int y = 0; y < 7; y++)
+                board[x][y] = engine.getBoard().get(x, y);
+        MctsSearch first = new MctsSearch(5, 7, 2, new GameRandom(21L));
+        MctsSearch second = new MctsSearch(5, 7, 2, new GameRandom(21L));
+        first.setPlayouts(200);
+        second.setPlayouts(200);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(GameAction.fromDecision(first.search(board, 1, 0L, new int[8], null), 5),
+                         GameAction.fromDecision(second.search(board, 1, 0L, new int[8], null), 5));
+        }
+        first.reseed(new GameRandom(4L));
+        second.reseed(new GameRandom(4L));
+        assertEquals(GameAction.fromDecision(first.search(board, 1, 0L, new int[8], null), 5),
+                     GameAction.fromDecision(second.search(board, 1, 0L, new int[8], null), 5));
+    }
+
+    @Test
+    public void boardWithoutMovesReturnsTheFallback() {
+        int[][] board = new int[2][2];
+        board[0][0] = 0; board[1][0] = 1; board[0][1] = 2; board[1][1] = 3;
+
+        assertNull(new MctsSearch(2, 2, 1, new GameRandom(1L)).search(board, 1, 0L, new int[8], null));
+    }
+}
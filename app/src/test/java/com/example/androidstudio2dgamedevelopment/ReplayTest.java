@@ -0,0 +1,129 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplayTest {
+
+    private static GameEngine recordedBotGame(Replay.Recorder recorder, long seed, int moves) {
+        GameEngine engine = new GameEngine(5, 7, 0L);
+        engine.setRecorder(recorder);
+        engine.newGame(seed);
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+        for (int i = 0; i < moves && !engine.isGameOver(); i++) {
+            if (!SelfPlayBot.playTurn(ctx, engine)) break;
+        }
+        return engine;
+    }
+
+    @Test
+    public void replayReproducesTheRecordedGame() {
+        Replay.Recorder recorder = new Replay.Recorder();
+        GameEngine original = recordedBotGame(recorder, 42L, 200);
+        byte[] data = recorder.toByteArray();
+
+        GameEngine replayed = Replay.play(data, true);
+        assertEquals(original.getSeed(), replayed.getSeed());
+        assertEquals(original.getMoveCount(), replayed.getMoveCount());
+        assertEquals(original.getScore(), replayed.getScore());
+        assertEquals(original.getLevel(), replayed.getLevel());
+        assertEquals(original.isGameOver(), replayed.isGameOver());
+        assertEquals(original.getBoard().getHash(), replayed.getBoard().getHash());
+        assertArrayEquals(original.getBonusCounts(), replayed.getBonusCounts());
+        // three bytes per action or spawn after the 16-byte header
+        assertEquals(0, (data.length - 16) % 3);
+    }
+
+    @Test
+    public void purchasesAndUndoAreRecorded() {
+        Replay.Recorder recorder = new Replay.Recorder();
+        GameEngine original = new GameEngine(5, 7, 0L);
+        original.setRecorder(recorder);
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+        long cost = GameRules.BONUS_BUY_COSTS[SelfPlayBot.IDX_UNDO];
+        for (long seed = 1L; original.getScore() < cost || original.isGameOver(); seed++) {
+            // find a game that makes the undo affordable
+            original.newGame(seed);
+            while (original.getScore() < cost && SelfPlayBot.playTurn(ctx, original)) {
+                // keep playing
+            }
+        }
+        assertTrue(original.apply(GameAction.buy(SelfPlayBot.IDX_UNDO)));
+        assertTrue(original.apply(GameAction.undo()));
+        assertTrue(SelfPlayBot.playTurn(ctx, original));
+
+        GameEngine replayed = Replay.play(recorder.toByteArray(), true);
+        assertEquals(original.getScore(), replayed.getScore());
+        assertEquals(original.getMoveCount(), replayed.getMoveCount());
+        assertEquals(original.getBoard().getHash(), replayed.getBoard().getHash());
+        assertArrayEquals(original.getBonusCounts(), replayed.getBonusCounts());
+    }
+
+    @Test
+    public void divergingSpawnIsReported() {
+        Replay.Recorder recorder = new Replay.Recorder();
+        recordedBotGame(recorder, 3L, 20);
+        byte[] data = recorder.toByteArray();
+        // the first action record starts after the 16-byte header; its first spawn follows it
+        byte[] tampered = Arrays.copyOf(data, data.length);
+        assertEquals(1, tampered[19]);
+        tampered[20] ^= 1;
+        try {
+            Replay.play(tampered, true);
+            fail("tampered spawn not detected");
+        } catch (IllegalArgumentException expected) {
+            // diverges before action 1
+        }
+        Replay.play(tampered, false);
+    }
+
+    @Test
+    public void rejectsOtherData() {
+        try {
+            Replay.play(new byte[]{'P', 'K', 3, 4}, true);
+            fail("accepted data without the replay header");
+        } catch (IllegalArgumentException expected) {
+            // not a replay
+        }
+    }
+
+    @Test
+    public void invalidationLastsUntilTheNextGame() {
+        Replay.Recorder recorder = new Replay.Recorder();
+        GameEngine engine = recordedBotGame(recorder, 9L, 5);
+        assertTrue(recorder.isValid());
+
+        recorder.invalidate();
+        assertFalse(recorder.isValid());
+        engine.newGame(10L);
+        assertTrue(recorder.isValid());
+    }
+
+    @Test
+    public void saveReplacesTheFileWhole() throws IOException {
+        File dir = Files.createTempDirectory("replays").toFile();
+        File target = new File(new File(dir, "sub"), "last.rpl");
+        Replay.Recorder recorder = new Replay.Recorder();
+        recordedBotGame(recorder, 42L, 50);
+        byte[] first = recorder.toByteArray();
+        recordedBotGame(recorder, 43L, 10);
+        byte[] second = recorder.toByteArray();
+
+        Replay.save(first, target);
+        assertArrayEquals(first, Files.readAllBytes(target.toPath()));
+        Replay.save(second, target);
+        assertArrayEquals(second, Files.readAllBytes(target.toPath()));
+        assertEquals(1, target.getParentFile().list().length); // no temporary file left
+        assertEquals(Replay.play(second, true).getScore(), Replay.play(Files.readAllBytes(target.toPath()), true).getScore());
+    }
+}
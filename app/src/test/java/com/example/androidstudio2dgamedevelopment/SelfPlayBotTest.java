@@ -0,0 +1,133 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SelfPlayBotTest {
+
+    private static int[][] emptyBoard(int w, int h) {
+        int[][] board = new int[w][h];
+        for (int[] col : board) Arrays.fill(col, -1);
+        return board;
+    }
+
+    @Test
+    public void scanSourcesKeepsFirstSourceOnEqualScores() {
+        int w = 20, h = 20;
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(w, h);
+        ctx.load(emptyBoard(w, h));
+
+        SelfPlayBot.BotDecision d = SelfPlayBot.scanSources(ctx, 0, (c, sx, sy, best) -> {
+            int score = (sx % 5 == 3) ? 7 : 1;
+            if (score > best.score) best.set(score, SelfPlayBot.BotDecision.Type.DISSOLVE, sx, sy, 0, 0);
+        }).toDecision();
+
+        assertNotNull(d);
+        assertEquals(3, d.p1x);
+        assertEquals(0, d.p1y);
+    }
+
+    @Test
+    public void largeBoardFindsDirectMerge() {
+        int w = 20, h = 20;
+        int[][] board = emptyBoard(w, h);
+        board[10][10] = 3; board[11][10] = 3; board[12][10] = 3;
+        board[0][19] = 3;
+        int[] bonusCounts = new int[8];
+
+        SelfPlayBot.BotDecision d = SelfPlayBot.computeDecision(board, w, h, bonusCounts, w * h - 4);
+
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, d.type);
+        assertEquals(0, d.p1x);
+        assertEquals(19, d.p1y);
+        assertEquals(3, board[0][19]); // input board left untouched
+    }
+
+    @Test
+    public void liftedSourceDoesNotCountTowardsItsOwnMerge() {
+        int w = 20, h = 20;
+        int[][] board = emptyBoard(w, h);
+        board[0][0] = 1; board[1][0] = 1; board[2][0] = 1;
+        board[10][10] = 1;
+        int[] bonusCounts = new int[8];
+
+        SelfPlayBot.BotDecision d = SelfPlayBot.computeDecision(board, w, h, bonusCounts, w * h - 4);
+
+        // moving (0,0) to (3,0) leaves only three cells together
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, d.type);
+        assertEquals(10, d.p1x);
+        assertEquals(10, d.p1y);
+        assertEquals(3, d.p2x);
+        assertEquals(0, d.p2y);
+    }
+
+    @Test
+    public void bitboardMergeJoinsPiecesAroundTheTarget() {
+        int w = 5, h = 7;
+        int[][] board = emptyBoard(w, h);
+        board[0][3] = 2; board[2][3] = 2; board[3][3] = 2;
+        board[0][6] = 2;
+        int[] bonusCounts = new int[8];
+
+        SelfPlayBot.BotDecision d = SelfPlayBot.computeDecision(board, w, h, bonusCounts, w * h - 4);
+
+        // the gap joins the lone 2 on its left and the pair on its right; lifting
+        // (0,3) itself into the gap would leave only three
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, d.type);
+        assertEquals(0, d.p1x);
+        assertEquals(6, d.p1y);
+        assertEquals(1, d.p2x);
+        assertEquals(3, d.p2y);
+    }
+
+    @Test
+    public void distanceLookupsMatchABruteForceScan() {
+        int w = 9, h = 11;
+        int[][] board = emptyBoard(w, h);
+        Random rand = new Random(5);
+        for (int x = 0; x < w; x++)
+            for (int y = 0; y < h; y++)
+                if (rand.nextInt(3) == 0) board[x][y] = rand.nextInt(4);
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(w, h);
+        ctx.load(board);
+        ctx.computeDistances();
+
+        for (int v = 0; v < 4; v++) {
+            for (int exclude = 0; exclude < w * h; exclude += 7) {
+                for (int cell = 0; cell < w * h; cell++) {
+                    int expected = Integer.MAX_VALUE;
+                    for (int c = 0; c < w * h; c++) {
+                        if (c == exclude || board[c % w][c / w] != v) continue;
+                        expected = Math.min(expected, Math.abs(c % w - cell % w) + Math.abs(c / w - cell / w));
+                    }
+                    assertEquals(expected, ctx.nearestOther(v, cell, exclude));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contextIsReusableAcrossDecisions() {
+        GameBoardArray board = new GameBoardArray(5, 7);
+        board.set(0, 0, 1); board.set(1, 0, 1); board.set(2, 0, 1);
+        board.set(4, 6, 1);
+        SelfPlayBot.Context ctx = new SelfPlayBot.Context(5, 7);
+        int[] bonusCounts = new int[8];
+
+        ctx.load(board);
+        SelfPlayBot.BotDecision first = SelfPlayBot.computeDecision(ctx, bonusCounts);
+        ctx.load(board);
+        SelfPlayBot.BotDecision second = SelfPlayBot.computeDecision(ctx, bonusCounts);
+
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, first.type);
+        assertEquals(4, first.p1x);
+        assertEquals(6, first.p1y);
+        assertEquals(first.p2x, second.p2x);
+        assertEquals(first.p2y, second.p2y);
+    }
+}
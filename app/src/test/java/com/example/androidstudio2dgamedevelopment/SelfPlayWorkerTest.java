@@ -0,0 +1,86 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SelfPlayWorkerTest {
+
+    private static GameBoardArray mergeReadyBoard() {
+        GameBoardArray board = new GameBoardArray(5, 7);
+        board.set(0, 0, 1); board.set(1, 0, 1); board.set(2, 0, 1);
+        board.set(4, 6, 1);
+        return board;
+    }
+
+    private static void awaitIdle(SelfPlayWorker worker) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (worker.isBusy() && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        assertFalse(worker.isBusy());
+    }
+
+    @Test
+    public void decisionArrivesForTheSubmittedBoard() throws InterruptedException {
+        GameBoardArray board = mergeReadyBoard();
+        SelfPlayWorker worker = new SelfPlayWorker(new SelfPlayBot.Context(5, 7));
+
+        assertTrue(worker.submit(new SelfPlayWorker.Snapshot(board, 1, 0L, new int[8])));
+        awaitIdle(worker);
+        SelfPlayWorker.Result result = worker.poll(SelfPlayWorker.stateVersion(board, 1, 0L, new int[8]));
+
+        assertNotNull(result);
+        assertEquals(SelfPlayBot.BotDecision.Type.NORMAL, result.decision.type);
+        assertEquals(4, result.decision.p1x);
+        assertEquals(6, result.decision.p1y);
+    }
+
+    @Test
+    public void resultForAChangedBoardIsDropped() throws InterruptedException {
+        GameBoardArray board = mergeReadyBoard();
+        SelfPlayWorker worker = new SelfPlayWorker(new SelfPlayBot.Context(5, 7));
+        SelfPlayWorker.Snapshot snapshot = new SelfPlayWorker.Snapshot(board, 1, 0L, new int[8]);
+        board.set(3, 3, 2); // board moves on after the snapshot
+
+        assertTrue(worker.submit(snapshot));
+        awaitIdle(worker);
+
+        assertNull(worker.poll(SelfPlayWorker.stateVersion(board, 1, 0L, new int[8])));
+        assertNull(worker.poll(snapshot.version)); // dropped, not kept for later
+        assertTrue(worker.submit(new SelfPlayWorker.Snapshot(board, 1, 0L, new int[8])));
+    }
+
+    @Test
+    public void resultForChangedBonusesOrScoreIsDropped() throws InterruptedException {
+        GameBoardArray board = mergeReadyBoard();
+        SelfPlayWorker worker = new SelfPlayWorker(new SelfPlayBot.Context(5, 7));
+        int[] bonuses = new int[8];
+        SelfPlayWorker.Snapshot snapshot = new SelfPlayWorker.Snapshot(board, 1, 0L, bonuses);
+
+        assertTrue(worker.submit(snapshot));
+        awaitIdle(worker);
+        bonuses[SelfPlayBot.IDX_DISSOLVE]++; // bought while the worker was thinking
+
+        assertNull(worker.poll(SelfPlayWorker.stateVersion(board, 1, 0L, bonuses)));
+        assertTrue(snapshot.version != SelfPlayWorker.stateVersion(board, 1, 4L, new int[8]));
+        assertTrue(snapshot.version != SelfPlayWorker.stateVersion(board, 2, 0L, new int[8]));
+        assertEquals(snapshot.version, SelfPlayWorker.stateVersion(board, 1, 0L, new int[8]));
+    }
+
+    @Test
+    public void closeEndsTheWorkerThread() throws InterruptedException {
+        GameBoardArray board = mergeReadyBoard();
+        SelfPlayWorker worker = new SelfPlayWorker(new SelfPlayBot.Context(5, 7));
+        assertTrue(worker.submit(new SelfPlayWorker.Snapshot(board, 1, 0L, new int[8])));
+        awaitIdle(worker); // the thread is parked now
+
+        worker.close();
+
+        assertTrue(worker.awaitTermination(5000));
+        assertFalse(worker.submit(new SelfPlayWorker.Snapshot(board, 1, 0L, new int[8])));
+        assertFalse(worker.isBusy());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void deeperEntriesSurviveUntilTheNextSearch() {
+        TranspositionTable table = new TranspositionTable(4);
+        long a = 1L, b = 17L; // same slot in a 16-entry table
+
+        table.store(a, 3, 10.0);
+        table.store(b, 1, 20.0);
+        assertEquals(10.0, table.probe(a, 3), 0.0);
+        assertTrue(Double.isNaN(table.probe(a, 4)));
+        assertTrue(Double.isNaN(table.probe(b, 1)));
+
+        table.newSearch();
+        table.store(b, 1, 20.0);
+        assertEquals(20.0, table.probe(b, 1), 0.0);
+        assertTrue(Double.isNaN(table.probe(a, 1)));
+
+        assertEquals(5, table.getProbes());
+        assertEquals(2, table.getHits());
+        assertEquals(1, table.getOverwrites());
+    }
+
+    @Test
+    public void keysDependOnLevelScoreAndBonuses() {
+        int[] bonuses = new int[8];
+        long base = TranspositionTable.key(42L, 1, 0L, bonuses);
+        assertNotEquals(base, TranspositionTable.key(42L, 2, 0L, bonuses));
+        // one score point closer to level 2 changes what a merge there is worth
+        assertNotEquals(base, TranspositionTable.key(42L, 1, 1L, bonuses));
+        bonuses[3] = 1;
+        assertNotEquals(base, TranspositionTable.key(42L, 1, 0L, bonuses));
+        bonuses[3] = 0;
+        assertEquals(base, TranspositionTable.key(42L, 1, 0L, bonuses));
+    }
+}
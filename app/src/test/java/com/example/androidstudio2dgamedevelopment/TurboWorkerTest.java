@@ -0,0 +1,78 @@
+package com.example.androidstudio2dgamedevelopment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TurboWorkerTest {
+
+    private static TurboWorker.Frame awaitFrame(TurboWorker worker, int minGamesFinished) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        TurboWorker.Frame last = null;
+        while (System.currentTimeMillis() < deadline) {
+            TurboWorker.Frame frame = worker.poll();
+            if (frame != null) last = frame;
+            if (last != null && last.gamesFinished >= minGamesFinished) return last;
+            Thread.sleep(1);
+        }
+        return last;
+    }
+
+    private static void awaitPaused(TurboWorker worker) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!worker.isPaused() && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        assertTrue(worker.isPaused());
+    }
+
+    @Test
+    public void playsAndRestartsGamesUntilPaused() throws InterruptedException {
+        GameEngine engine = new GameEngine(3, 3, 7L);
+        TurboWorker worker = new TurboWorker(engine, new SelfPlayBot.Context(3, 3), new GameRandom(11L));
+        assertTrue(worker.isPaused());
+
+        assertTrue(worker.resume());
+        assertFalse(worker.resume()); // already running
+        TurboWorker.Frame frame = awaitFrame(worker, 1);
+        assertNotNull(frame);
+        assertTrue(frame.gamesFinished >= 1);
+        assertTrue(frame.bestScore > 0);
+
+        worker.pause();
+        awaitPaused(worker);
+        TurboWorker.Frame last = worker.poll();
+        assertNotNull(last); // published on the way out
+        int moves = engine.getMoveCount();
+        Thread.sleep(20);
+        assertEquals(moves, engine.getMoveCount()); // the engine is ours again
+        assertEquals(engine.getScore(), last.score);
+        assertEquals(engine.getLevel(), last.level);
+
+        worker.close();
+        assertTrue(worker.awaitTermination(5000));
+        assertFalse(worker.resume());
+    }
+
+    @Test
+    public void resumeContinuesWhereThePauseLeftOff() throws InterruptedException {
+        GameEngine engine = new GameEngine(5, 7, 3L);
+        TurboWorker worker = new TurboWorker(engine, new SelfPlayBot.Context(5, 7), new GameRandom(5L));
+        assertTrue(worker.resume());
+        worker.pause();
+        awaitPaused(worker);
+        assertNotNull(worker.poll()); // the frame published on pausing
+        long seed = engine.getSeed();
+        int moves = engine.getMoveCount();
+
+        assertTrue(worker.resume());
+        assertNotNull(awaitFrame(worker, 0));
+        worker.pause();
+        awaitPaused(worker);
+        assertTrue(engine.getSeed() != seed || engine.getMoveCount() > moves);
+
+        worker.close();
+        assertTrue(worker.awaitTermination(5000));
+    }
+}